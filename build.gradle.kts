@@ -1,5 +1,6 @@
 plugins {
     id("com.github.johnrengelman.shadow") version "7.1.0"
+    id("me.champeau.jmh") version "0.6.6"
     java
     `maven-publish`
 }
@@ -10,6 +11,23 @@ repositories {
     maven("https://jcenter.bintray.com")
 }
 
+sourceSets {
+    // synthetic configurations and payloads shared by the benchmarks and the load test
+    create("fixtures") {
+        compileClasspath += main.get().output
+        runtimeClasspath += main.get().output
+    }
+    create("loadtest") {
+        compileClasspath += main.get().output + getByName("fixtures").output
+        runtimeClasspath += main.get().output + getByName("fixtures").output
+    }
+}
+
+configurations {
+    getByName("fixturesImplementation").extendsFrom(implementation.get())
+    getByName("loadtestImplementation").extendsFrom(implementation.get())
+}
+
 dependencies {
     implementation("commons-io:commons-io:2.7")
     implementation("com.google.api-client:google-api-client:1.23.0")
@@ -27,6 +45,14 @@ dependencies {
     implementation("org.apache.logging.log4j:log4j-slf4j-impl:2.17.0")
     compileOnly("org.projectlombok", "lombok", "1.18.22")
     annotationProcessor("org.projectlombok", "lombok", "1.18.22")
+
+    testImplementation(sourceSets["fixtures"].output)
+    testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
+
+    "jmhImplementation"(sourceSets["fixtures"].output)
+    "loadtestImplementation"("com.h2database:h2:2.1.210")
+    "loadtestCompileOnly"("org.projectlombok", "lombok", "1.18.22")
+    "loadtestAnnotationProcessor"("org.projectlombok", "lombok", "1.18.22")
 }
 
 group = "de.eldoria"
@@ -40,6 +66,17 @@ publishing {
     }
 }
 
+jmh {
+    jmhVersion.set("1.34")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    jvmArgsAppend.set(listOf("-Dlog4j.configurationFile=log4j2-benchmark.xml"))
+    // run a subset with -Pjmh.includes=<regex>
+    if (project.hasProperty("jmh.includes")) {
+        includes.set(listOf(project.property("jmh.includes").toString()))
+    }
+}
+
 tasks.withType<JavaCompile>() {
     options.encoding = "UTF-8"
 }
@@ -55,6 +92,26 @@ tasks {
     build {
         dependsOn(shadowJar)
     }
+
+    register<Copy>("jmhBaseline") {
+        group = "benchmark"
+        description = "Stores the results of the last jmh run as baseline in benchmarks/baseline.json."
+        from(layout.buildDirectory.file("results/jmh/results.json"))
+        into("benchmarks")
+        rename { "baseline.json" }
+    }
+
+    register<JavaExec>("loadTest") {
+        group = "verification"
+        description = "Runs the load test against a local web api. Pass options with -PloadTest.args=\"--check=128 --duration=60\"."
+        classpath = sourceSets["loadtest"].runtimeClasspath
+        mainClass.set("de.eldoria.updatebutler.loadtest.LoadTest")
+        jvmArgs("-Dlog4j.configurationFile=log4j2-loadtest.xml")
+        if (project.hasProperty("loadTest.args")) {
+            args(project.property("loadTest.args").toString().split(" "))
+        }
+    }
+
     compileJava {
         options.encoding = "UTF-8"
     }
@@ -0,0 +1,159 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.eldoria.updatebutler.config.phrase.PlainPhrase;
+import de.eldoria.updatebutler.config.phrase.RegexPhrase;
+import de.eldoria.updatebutler.util.C;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a synthetic configuration for benchmarks and load tests.
+ * <p>
+ * Every guild has the same amount of applications, releases and phrases. Every fifth release is a dev build.
+ * Application ids start at 1 and are assigned guild by guild. The files are written directly instead of through the
+ * journal, which would sync every record to disk.
+ */
+public class SyntheticConfiguration {
+    private static final long FIRST_GUILD = 100000000000000000L;
+    private final JsonObject properties = new JsonObject();
+    private int guilds = 10;
+    private int appsPerGuild = 5;
+    private int releasesPerApp = 10;
+    private int phrases = 20;
+    private int releaseFileSize;
+
+    public SyntheticConfiguration guilds(int guilds) {
+        this.guilds = guilds;
+        return this;
+    }
+
+    public SyntheticConfiguration appsPerGuild(int appsPerGuild) {
+        this.appsPerGuild = appsPerGuild;
+        return this;
+    }
+
+    public SyntheticConfiguration releasesPerApp(int releasesPerApp) {
+        this.releasesPerApp = releasesPerApp;
+        return this;
+    }
+
+    public SyntheticConfiguration phrases(int phrases) {
+        this.phrases = phrases;
+        return this;
+    }
+
+    /**
+     * Write a release file for every application. All releases of a application share the file.
+     *
+     * @param releaseFileSize size of the file in bytes or 0 to reference files which do not exist
+     *
+     * @return this instance
+     */
+    public SyntheticConfiguration releaseFileSize(int releaseFileSize) {
+        this.releaseFileSize = releaseFileSize;
+        return this;
+    }
+
+    /**
+     * Set a property of the main configuration.
+     *
+     * @param name  serialized name of the property
+     * @param value value of the property
+     *
+     * @return this instance
+     */
+    public SyntheticConfiguration property(String name, JsonElement value) {
+        properties.add(name, value);
+        return this;
+    }
+
+    public int getGuilds() {
+        return guilds;
+    }
+
+    public int getApplications() {
+        return guilds * appsPerGuild;
+    }
+
+    public int getReleasesPerApp() {
+        return releasesPerApp;
+    }
+
+    public static String guildId(int guild) {
+        return Long.toString(FIRST_GUILD + guild);
+    }
+
+    public static String version(int release) {
+        return "1." + release / 10 + "." + release % 10 + (release % 5 == 4 ? "-SNAPSHOT" : "");
+    }
+
+    /**
+     * Write the configuration.
+     *
+     * @param directory configuration directory
+     *
+     * @throws IOException when a file could not be written
+     */
+    public void write(Path directory) throws IOException {
+        Path guildDirectory = Files.createDirectories(directory.resolve("guilds"));
+        Path releaseDirectory = Files.createDirectories(directory.resolve("releases"));
+        JsonObject applicationGuilds = new JsonObject();
+        JsonObject webhooks = new JsonObject();
+        LocalDateTime published = LocalDateTime.of(2020, 1, 1, 0, 0);
+        SplittableRandom random = new SplittableRandom(42);
+        int id = 0;
+        for (int guild = 0; guild < guilds; guild++) {
+            String guildId = guildId(guild);
+            GuildSettings settings = new GuildSettings();
+            for (int phrase = 0; phrase < phrases; phrase++) {
+                settings.addPhrase(phrase % 4 == 0
+                        ? new RegexPhrase("how (do|can) i use feature " + phrase + "\\b", "command" + phrase)
+                        : new PlainPhrase("where is option " + phrase, "command" + phrase, false));
+            }
+            for (int app = 0; app < appsPerGuild; app++) {
+                id++;
+                Application application = new Application(id, "app" + id, "Application " + id,
+                        "Synthetic application", new String[] {"a" + id}, 1L, null);
+                Path file = releaseDirectory.resolve(id + ".jar").toAbsolutePath();
+                if (releaseFileSize > 0) {
+                    writeRandom(file, releaseFileSize, random);
+                }
+                for (int release = 0; release < releasesPerApp; release++) {
+                    String version = version(release);
+                    // adding through the application would rebuild the release index for every release
+                    application.getReleases().put(version, new Release(version, "Release " + version, "Patchnotes",
+                            release % 5 == 4, C.DATE_FORMAT.format(published.plusHours(release)),
+                            file.toString(), Integer.toHexString(version.hashCode())));
+                }
+                settings.getApplications().put(Integer.toString(id), application);
+                applicationGuilds.addProperty(Integer.toString(id), guildId);
+                webhooks.addProperty(application.getWebhook(), id);
+            }
+            Files.writeString(guildDirectory.resolve(guildId + ".json"), Configuration.GSON.toJson(settings));
+        }
+        JsonObject config = properties.deepCopy();
+        config.addProperty("currentId", id);
+        config.add("application_guilds", applicationGuilds);
+        config.add("webhooks", webhooks);
+        Files.writeString(directory.resolve("config.json"), config.toString());
+    }
+
+    private static void writeRandom(Path file, int size, SplittableRandom random) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int written = 0; written < size; written += buffer.length) {
+                for (int i = 0; i < buffer.length; i++) {
+                    buffer[i] = (byte) random.nextInt(256);
+                }
+                out.write(buffer, 0, Math.min(buffer.length, size - written));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.eldoria.updatebutler.api;
+
+import de.eldoria.updatebutler.config.RateLimitPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import spark.Request;
+import spark.RequestResponseFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiting of requests which are allowed. Denied requests are halted with an exception and are not measured.
+ * <p>
+ * The client address is resolved for every request, like it is for every new http request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+    private static final int CLIENTS = 1024;
+    private final Request[] requests = new Request[CLIENTS];
+    private final Request[] proxiedRequests = new Request[CLIENTS];
+    private final ClientAddress[] addresses = new ClientAddress[CLIENTS];
+    private RateLimiter limiter;
+
+    @Setup
+    public void setup() {
+        ClientAddressResolver resolver = new ClientAddressResolver(List.of("127.0.0.1/32"));
+        // high enough to never deny a request
+        limiter = new RateLimiter("benchmark", new RateLimitPolicy(Integer.MAX_VALUE, 1e12), CLIENTS * 2, resolver);
+        for (int i = 0; i < CLIENTS; i++) {
+            String address = "10.0." + (i >> 8) + "." + (i & 255);
+            requests[i] = request(address, null);
+            proxiedRequests[i] = request("127.0.0.1", address);
+            addresses[i] = ClientAddress.parse(address);
+        }
+    }
+
+    private static Request request(String remote, String forwardedFor) {
+        HttpServletRequest raw = (HttpServletRequest) Proxy.newProxyInstance(
+                RateLimiterBenchmark.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRemoteAddr":
+                            return remote;
+                        case "getHeaders":
+                            return "X-Forwarded-For".equals(args[0]) && forwardedFor != null
+                                    ? Collections.enumeration(List.of(forwardedFor))
+                                    : Collections.emptyEnumeration();
+                        case "getHeader":
+                            return "X-Forwarded-For".equals(args[0]) ? forwardedFor : null;
+                        default:
+                            // attributes are not stored, so the address is resolved on every call
+                            return null;
+                    }
+                });
+        return RequestResponseFactory.create(raw);
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private int index;
+
+        int next() {
+            index = (index + 1) & (CLIENTS - 1);
+            return index;
+        }
+    }
+
+    /**
+     * Take a token of a known address.
+     */
+    @Benchmark
+    public long tryAcquire(Client client) {
+        return limiter.tryAcquire(addresses[client.next()]);
+    }
+
+    /**
+     * Take a token of a single client from several threads.
+     */
+    @Benchmark
+    @Threads(4)
+    public long tryAcquireContended() {
+        return limiter.tryAcquire(addresses[0]);
+    }
+
+    /**
+     * Resolve the client of a direct request and take a token.
+     */
+    @Benchmark
+    public Request assertRateLimit(Client client) {
+        Request request = requests[client.next()];
+        limiter.assertRateLimit(request, null);
+        return request;
+    }
+
+    /**
+     * Resolve the client of a request from a trusted proxy and take a token.
+     */
+    @Benchmark
+    public Request assertRateLimitProxied(Client client) {
+        Request request = proxiedRequests[client.next()];
+        limiter.assertRateLimit(request, null);
+        return request;
+    }
+}
@@ -0,0 +1,59 @@
+package de.eldoria.updatebutler.api.debug;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the debug report page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DebugPageBenchmark {
+    /**
+     * Lines of the latest log in the report.
+     */
+    @Param({"100", "5000"})
+    public int logLines;
+    private DebugPage page;
+    private DebugPayload payload;
+
+    @Setup
+    public void setup() throws IOException {
+        page = new DebugPage("http://localhost:19050");
+        Gson gson = new Gson();
+        try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream("debug-payload.json"),
+                StandardCharsets.UTF_8)) {
+            payload = gson.fromJson(reader, DebugPayload.class);
+        }
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < logLines; i++) {
+            log.append("[12:00:").append(i % 60).append(" INFO]: [Plugin] Synthetic log line number ").append(i).append('\n');
+        }
+        payload.getLatestLog().setLog(log.toString());
+    }
+
+    @Benchmark
+    public String renderReport() {
+        return page.report("0123456789abcdef", payload);
+    }
+}
@@ -0,0 +1,133 @@
+package de.eldoria.updatebutler.api.updates;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import de.eldoria.updatebutler.api.WebAPI;
+import de.eldoria.updatebutler.artifacts.ArtifactCache;
+import de.eldoria.updatebutler.config.Configuration;
+import de.eldoria.updatebutler.config.RateLimitPolicy;
+import de.eldoria.updatebutler.config.RateLimitSettings;
+import de.eldoria.updatebutler.config.SyntheticConfiguration;
+import de.eldoria.updatebutler.webhook.WebhookQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import spark.Spark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Downloads through the whole web api, including rate limiting, release lookup, conditional request handling and the
+ * artifact cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class DownloadBenchmark {
+    @Param({"true", "false"})
+    public boolean cached;
+
+    @Param({"65536", "4194304"})
+    public int size;
+
+    private Path directory;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        directory = Files.createTempDirectory("updatebutler-download");
+        JsonObject artifacts = new JsonObject();
+        artifacts.addProperty("cache_size", cached ? 64L * 1024 * 1024 : 0);
+        new SyntheticConfiguration()
+                .guilds(1)
+                .appsPerGuild(1)
+                .releasesPerApp(10)
+                .phrases(0)
+                .releaseFileSize(size)
+                .property("host", new JsonPrimitive("127.0.0.1"))
+                .property("port", new JsonPrimitive(port))
+                .property("artifacts", artifacts)
+                .property("rate_limits", new Gson().toJsonTree(unlimited()))
+                .write(directory);
+        Configuration configuration = Configuration.load(directory);
+        if (cached) {
+            configuration.setArtifactCache(new ArtifactCache(configuration.getArtifacts()));
+        }
+        new WebAPI(configuration, null, new WebhookQueue(configuration, directory.resolve("webhooks")));
+        Spark.awaitInitialization();
+        if (cached) {
+            // the cache is filled in the background after the first download
+            try (KeepAliveClient client = new KeepAliveClient(port)) {
+                client.get("/download?id=1&version=latest");
+            }
+            TimeUnit.SECONDS.sleep(1);
+        }
+    }
+
+    private static RateLimitSettings unlimited() {
+        // one token every 10 ns. Above one token per ns the interval is rounded to 0, which disables the burst.
+        RateLimitPolicy policy = new RateLimitPolicy(Integer.MAX_VALUE, 6e9);
+        RateLimitSettings settings = new RateLimitSettings();
+        settings.setCheck(policy);
+        settings.setCheckBatch(policy);
+        settings.setDownload(policy);
+        settings.setDebugSubmit(policy);
+        return settings;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Spark.stop();
+        Spark.awaitStop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private KeepAliveClient client;
+
+        @Setup(Level.Trial)
+        public void connect(DownloadBenchmark benchmark) throws IOException {
+            client = new KeepAliveClient(benchmark.port);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public long download(Client client) throws IOException {
+        return client.client.get("/download?id=1&version=latest");
+    }
+}
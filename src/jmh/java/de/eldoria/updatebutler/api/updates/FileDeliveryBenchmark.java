@@ -0,0 +1,133 @@
+package de.eldoria.updatebutler.api.updates;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery of uncached release files through jetty, compared with the stream copy used before {@link FileDelivery}.
+ * <p>
+ * Each thread downloads the file over its own keep alive connection and discards the body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class FileDeliveryBenchmark {
+    /**
+     * {@code copy} streams the file through a heap buffer, {@code mapped} maps the file and {@code transfer} is used
+     * when too many mappings were not released yet.
+     */
+    @Param({"copy", "mapped", "transfer"})
+    public String delivery;
+
+    @Param({"65536", "4194304"})
+    public int size;
+
+    private Server server;
+    private Path file;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = Files.createTempFile("delivery", ".jar");
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        Files.write(file, content);
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request base, HttpServletRequest request, HttpServletResponse response)
+                    throws IOException {
+                base.setHandled(true);
+                response.setContentType("application/octet-stream");
+                deliver(response);
+            }
+        });
+        server.start();
+        port = connector.getLocalPort();
+    }
+
+    private void deliver(HttpServletResponse response) throws IOException {
+        switch (delivery) {
+            case "copy":
+                // delivery before release files were sent by jetty. The length is set to compare the copy only.
+                response.setContentLengthLong(size);
+                try (OutputStream output = response.getOutputStream()) {
+                    Files.copy(file, output);
+                }
+                break;
+            case "mapped":
+                FileDelivery.send(response, file, 0, -1);
+                break;
+            case "transfer":
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    response.setContentLengthLong(size);
+                    FileDelivery.transfer(channel, 0, size, response.getOutputStream());
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(delivery);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        server.stop();
+        Files.deleteIfExists(file);
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private KeepAliveClient client;
+
+        @Setup(Level.Trial)
+        public void connect(FileDeliveryBenchmark benchmark) throws IOException {
+            client = new KeepAliveClient(benchmark.port);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public long download(Client client) throws IOException {
+        return client.client.get("/download");
+    }
+}
@@ -0,0 +1,79 @@
+package de.eldoria.updatebutler.api.updates;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal http client for download benchmarks. Sends GET requests over one keep alive connection and discards the
+ * bodies, so the measurement is dominated by the server.
+ */
+final class KeepAliveClient implements Closeable {
+    private final byte[] buffer = new byte[64 * 1024];
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    KeepAliveClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        out = socket.getOutputStream();
+    }
+
+    /**
+     * Send a GET request and read the response. The response needs a content length.
+     *
+     * @param target path and query of the request
+     *
+     * @return amount of body bytes
+     *
+     * @throws IOException when the request failed or the status is not 200
+     */
+    long get(String target) throws IOException {
+        out.write(("GET " + target + " HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        long length = readHeaders();
+        for (long remaining = length; remaining > 0; ) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) throw new IOException("Connection closed.");
+            remaining -= read;
+        }
+        return length;
+    }
+
+    private long readHeaders() throws IOException {
+        StringBuilder line = new StringBuilder();
+        String status = null;
+        long length = -1;
+        while (true) {
+            int c = in.read();
+            if (c < 0) throw new IOException("Connection closed.");
+            if (c != '\n') {
+                if (c != '\r') line.append((char) c);
+                continue;
+            }
+            if (line.length() == 0) break;
+            String header = line.toString();
+            if (status == null) {
+                status = header;
+            } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Long.parseLong(header.substring(15).trim());
+            }
+            line.setLength(0);
+        }
+        if (status == null || !status.contains(" 200 ")) throw new IOException("Unexpected response " + status);
+        if (length < 0) throw new IOException("Response without content length.");
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
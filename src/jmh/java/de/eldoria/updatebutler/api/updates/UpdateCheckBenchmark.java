@@ -0,0 +1,58 @@
+package de.eldoria.updatebutler.api.updates;
+
+import com.google.gson.GsonBuilder;
+import de.eldoria.updatebutler.config.ConfigurationState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of update checks without the http layer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateCheckBenchmark {
+    private UpdateCheck updateCheck;
+    private int index;
+
+    @Setup
+    public void setup(ConfigurationState state) {
+        updateCheck = new UpdateCheck(state.configuration, new GsonBuilder().serializeNulls().create());
+    }
+
+    private int next() {
+        index = (index + 1) & (ConfigurationState.KEYS - 1);
+        return index;
+    }
+
+    /**
+     * Check with a released version.
+     */
+    @Benchmark
+    public byte[] check(ConfigurationState state) {
+        int key = next();
+        return updateCheck.answer(state.applicationIds[key], state.versions[key], (key & 1) == 0);
+    }
+
+    /**
+     * Check with a version which was never released, like a local build.
+     */
+    @Benchmark
+    public byte[] checkUnknownVersion(ConfigurationState state) {
+        int key = next();
+        return updateCheck.answer(state.applicationIds[key], "0.9.0-local", (key & 1) == 0);
+    }
+}
@@ -0,0 +1,91 @@
+package de.eldoria.updatebutler.config;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic configuration in a temporary directory.
+ *
+ * @see SyntheticConfiguration
+ */
+@State(Scope.Benchmark)
+public class ConfigurationState {
+    /**
+     * Amount of prepared lookup keys. Benchmarks cycle through them.
+     */
+    public static final int KEYS = 1024;
+    @Param({"10", "1000"})
+    public int guilds;
+    @Param({"5"})
+    public int appsPerGuild;
+    @Param({"10", "100"})
+    public int releasesPerApp;
+    @Param({"20"})
+    public int phrases;
+
+    public Configuration configuration;
+    public Path directory;
+    public final List<String> guildIds = new ArrayList<>();
+    public final List<Application> applications = new ArrayList<>();
+    public int[] applicationIds;
+    public String[] webhooks;
+    public String[] versions;
+    public String[] messages;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("updatebutler-bench");
+        new SyntheticConfiguration()
+                .guilds(guilds)
+                .appsPerGuild(appsPerGuild)
+                .releasesPerApp(releasesPerApp)
+                .phrases(phrases)
+                .write(directory);
+        configuration = Configuration.load(directory);
+        for (int guild = 0; guild < guilds; guild++) {
+            String guildId = SyntheticConfiguration.guildId(guild);
+            guildIds.add(guildId);
+            // load every guild, benchmarks measure the warm state
+            applications.addAll(configuration.getGuildSettings(guildId).getApplications().values());
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        applicationIds = new int[KEYS];
+        webhooks = new String[KEYS];
+        versions = new String[KEYS];
+        messages = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            Application application = applications.get(random.nextInt(applications.size()));
+            applicationIds[i] = application.getId();
+            webhooks[i] = application.getWebhook();
+            versions[i] = SyntheticConfiguration.version(random.nextInt(releasesPerApp));
+            // most messages in a guild do not match any phrase
+            messages[i] = random.nextInt(10) == 0
+                    ? "Hey, where is option " + random.nextInt(phrases) + " in the config?"
+                    : "Just a regular message without any question in it " + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        configuration.flush();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
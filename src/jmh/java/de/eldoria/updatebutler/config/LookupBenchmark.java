@@ -0,0 +1,67 @@
+package de.eldoria.updatebutler.config;
+
+import de.eldoria.updatebutler.config.phrase.Phrase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups which are performed by the web api and the command listener.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+    private int index;
+
+    private int next() {
+        index = (index + 1) & (ConfigurationState.KEYS - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Optional<Application> applicationById(ConfigurationState state) {
+        return state.configuration.getApplicationById(state.applicationIds[next()]);
+    }
+
+    @Benchmark
+    public Optional<Application> applicationByWebhook(ConfigurationState state) {
+        return state.configuration.getApplicationByWebhook(state.webhooks[next()]);
+    }
+
+    @Benchmark
+    public Optional<Release> release(ConfigurationState state) {
+        int key = next();
+        return state.configuration.getApplicationById(state.applicationIds[key]).get().getRelease(state.versions[key]);
+    }
+
+    @Benchmark
+    public Optional<Release> latestRelease(ConfigurationState state) {
+        return state.configuration.getApplicationById(state.applicationIds[next()]).get().getRelease("latest");
+    }
+
+    @Benchmark
+    public List<Release> releases(ConfigurationState state) {
+        return state.configuration.getApplicationById(state.applicationIds[next()]).get().getReleases(true);
+    }
+
+    @Benchmark
+    public Optional<Phrase> matchPhrase(ConfigurationState state) {
+        int key = next();
+        GuildSettings settings = state.configuration.getGuildSettings(state.guildIds.get(key % state.guildIds.size()));
+        return settings.matchPhrase(state.messages[key]);
+    }
+}
@@ -0,0 +1,56 @@
+package de.eldoria.updatebutler.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and persistence of the configuration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+    private int index;
+
+    private String nextGuild(ConfigurationState state) {
+        index = (index + 1) % state.guildIds.size();
+        return state.guildIds.get(index);
+    }
+
+    /**
+     * Serialize the settings of a guild including applications and releases.
+     */
+    @Benchmark
+    public String serializeGuild(ConfigurationState state) {
+        return Configuration.GSON.toJson(state.configuration.getGuildSettings(nextGuild(state)));
+    }
+
+    /**
+     * Journal a guild change, which is what a command does.
+     */
+    @Benchmark
+    public void journalGuild(ConfigurationState state) {
+        state.configuration.guildChanged(nextGuild(state));
+    }
+
+    /**
+     * Write a full snapshot with one changed guild and wait until it is persisted.
+     */
+    @Benchmark
+    public void flushGuild(ConfigurationState state) {
+        state.configuration.guildChanged(nextGuild(state));
+        state.configuration.flush();
+    }
+}
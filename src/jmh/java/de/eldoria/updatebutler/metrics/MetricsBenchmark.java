@@ -0,0 +1,71 @@
+package de.eldoria.updatebutler.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the instrumentation on the request path. Recording should stay far below a microsecond.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private Counter counter;
+    private Histogram histogram;
+    private MetricsRegistry registry;
+
+    @Setup
+    public void setup() {
+        registry = new MetricsRegistry();
+        counter = registry.counter("benchmark_total", "Benchmark counter.");
+        histogram = registry.histogram("benchmark_seconds", "Benchmark histogram.", "route", "benchmark");
+        for (int i = 0; i < 20; i++) {
+            registry.histogram("benchmark_seconds", "Benchmark histogram.", "route", "route" + i);
+        }
+    }
+
+    @Benchmark
+    public void counter() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void counterContended() {
+        counter.inc();
+    }
+
+    @Benchmark
+    public void recordSince() {
+        histogram.recordSince(System.nanoTime() - 1500);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordSinceContended() {
+        histogram.recordSince(System.nanoTime() - 1500);
+    }
+
+    /**
+     * Render the registry with 21 histograms, which happens once per scrape.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String scrape() {
+        return registry.scrape();
+    }
+}
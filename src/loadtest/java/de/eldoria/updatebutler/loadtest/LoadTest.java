@@ -0,0 +1,182 @@
+package de.eldoria.updatebutler.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import de.eldoria.updatebutler.api.WebAPI;
+import de.eldoria.updatebutler.artifacts.ArtifactCache;
+import de.eldoria.updatebutler.config.Configuration;
+import de.eldoria.updatebutler.config.RateLimitPolicy;
+import de.eldoria.updatebutler.config.RateLimitSettings;
+import de.eldoria.updatebutler.config.SyntheticConfiguration;
+import de.eldoria.updatebutler.webhook.WebhookQueue;
+import lombok.extern.slf4j.Slf4j;
+import spark.Spark;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays synthetic traffic against the web api.
+ * <p>
+ * The web api is started in this jvm with a synthetic configuration and a in memory database. Three workloads run at
+ * the same time, each with its own amount of workers:
+ * <ul>
+ *     <li>check: update checks of random applications and versions</li>
+ *     <li>download: downloads of the latest release of a single application, like after a release</li>
+ *     <li>debug: debug submissions</li>
+ * </ul>
+ * Options are passed as {@code --name=value}. See {@link #DEFAULTS} for all options.
+ */
+@Slf4j
+public final class LoadTest {
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("port", "19080"),
+            Map.entry("duration", "30"),
+            Map.entry("warmup", "5"),
+            Map.entry("check", "64"),
+            Map.entry("download", "8"),
+            Map.entry("debug", "2"),
+            // simulated client addresses. Every client has its own rate limit.
+            Map.entry("clients", "10000"),
+            // false to lift the rate limits and measure the raw throughput
+            Map.entry("rate-limits", "true"),
+            // execution mode of the web api: shared, routes or virtual
+            Map.entry("execution", "shared"),
+            // bytes of the release file cache. 0 reads every download from disk
+            Map.entry("cache-size", "268435456"),
+            Map.entry("guilds", "100"),
+            Map.entry("apps", "5"),
+            Map.entry("releases", "20"),
+            Map.entry("file-size", "1048576"));
+    private final Map<String, String> options;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (arg.isBlank()) continue;
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (!DEFAULTS.containsKey(option[0]) || option.length != 2) {
+                System.err.println("Unknown option " + arg + ". Known options with defaults: " + DEFAULTS);
+                System.exit(1);
+            }
+            options.put(option[0], option[1]);
+        }
+        LoadTest loadTest = new LoadTest(options);
+        int exit = loadTest.run(LoadTestDatabase.create(loadTest.integer("debug") + 2));
+        System.exit(exit);
+    }
+
+    private int integer(String option) {
+        return Integer.parseInt(options.get(option));
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param source database of the debug api
+     *
+     * @return exit code
+     */
+    int run(DataSource source) throws IOException, InterruptedException {
+        int port = integer("port");
+        Path directory = Files.createTempDirectory("updatebutler-load");
+        SyntheticConfiguration synthetic = new SyntheticConfiguration()
+                .guilds(integer("guilds"))
+                .appsPerGuild(integer("apps"))
+                .releasesPerApp(integer("releases"))
+                .releaseFileSize(integer("file-size"))
+                .property("host", new JsonPrimitive("127.0.0.1"))
+                .property("port", new JsonPrimitive(port))
+                .property("hostName", new JsonPrimitive("http://127.0.0.1:" + port));
+        JsonObject execution = new JsonObject();
+        execution.addProperty("mode", options.get("execution"));
+        synthetic.property("execution", execution);
+        JsonObject artifacts = new JsonObject();
+        artifacts.addProperty("cache_size", Long.parseLong(options.get("cache-size")));
+        synthetic.property("artifacts", artifacts);
+        if (!Boolean.parseBoolean(options.get("rate-limits"))) {
+            synthetic.property("rate_limits", new Gson().toJsonTree(unlimited()));
+        }
+        log.info("Writing synthetic configuration to {}", directory);
+        synthetic.write(directory);
+        Configuration configuration = Configuration.load(directory);
+        configuration.setArtifactCache(new ArtifactCache(configuration.getArtifacts()));
+
+        WebhookQueue webhookQueue = new WebhookQueue(configuration, directory.resolve("webhooks"));
+        new WebAPI(configuration, source, webhookQueue);
+        Spark.awaitInitialization();
+
+        String base = "http://127.0.0.1:" + port;
+        int applications = synthetic.getApplications();
+        int releases = synthetic.getReleasesPerApp();
+        byte[] payload;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("debug-payload.json")) {
+            payload = in.readAllBytes();
+        }
+
+        List<Scenario> scenarios = List.of(
+                new Scenario("check", integer("check"), (random, client) -> Scenario.request(base + "/check?id="
+                        + (1 + random.nextInt(applications))
+                        + "&version=" + SyntheticConfiguration.version(random.nextInt(releases))
+                        + "&devbuild=" + random.nextBoolean(), client).GET().build()),
+                new Scenario("download", integer("download"), (random, client) -> Scenario.request(base
+                        + "/download?id=1&version=latest", client).GET().build()),
+                new Scenario("debug", integer("debug"), (random, client) -> Scenario.request(base
+                        + "/debug/v1/submit", client)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(payload)).build()));
+
+        String[] clients = new String[integer("clients")];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+        }
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        long seed = 0;
+        for (Scenario scenario : scenarios) {
+            scenario.start(client, clients, seed);
+            seed += 1000;
+        }
+        log.info("Warming up for {} seconds.", options.get("warmup"));
+        TimeUnit.SECONDS.sleep(integer("warmup"));
+        for (Scenario scenario : scenarios) scenario.startMeasurement();
+        long start = System.nanoTime();
+        log.info("Measuring for {} seconds.", options.get("duration"));
+        TimeUnit.SECONDS.sleep(integer("duration"));
+        for (Scenario scenario : scenarios) scenario.stop();
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        StringBuilder report = new StringBuilder("Load test results ").append(options).append('\n');
+        for (Scenario scenario : scenarios) {
+            if (!scenario.isActive()) continue;
+            report.append(scenario.report(seconds)).append('\n');
+        }
+        System.out.print(report);
+        Spark.stop();
+        return 0;
+    }
+
+    private static RateLimitSettings unlimited() {
+        RateLimitPolicy policy = new RateLimitPolicy(Integer.MAX_VALUE, 1e12);
+        RateLimitSettings settings = new RateLimitSettings();
+        settings.setCheck(policy);
+        settings.setCheckBatch(policy);
+        settings.setDownload(policy);
+        settings.setDebugSubmit(policy);
+        return settings;
+    }
+}
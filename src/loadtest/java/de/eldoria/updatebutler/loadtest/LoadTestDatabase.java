@@ -0,0 +1,46 @@
+package de.eldoria.updatebutler.loadtest;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Collectors;
+
+/**
+ * In memory database which stands in for mariadb.
+ * <p>
+ * The schema contains only the columns which are used by the debug api and drops the json checks, which are not
+ * supported by h2.
+ */
+final class LoadTestDatabase {
+    private LoadTestDatabase() {
+    }
+
+    static DataSource create(int maxConnections) throws IOException, SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:updatebutler;MODE=MariaDB;DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(maxConnections);
+        HikariDataSource source = new HikariDataSource(config);
+
+        String schema;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                LoadTestDatabase.class.getClassLoader().getResourceAsStream("loadtest-schema.sql"),
+                StandardCharsets.UTF_8))) {
+            schema = reader.lines().collect(Collectors.joining(System.lineSeparator()));
+        }
+        try (Connection conn = source.getConnection(); Statement stmt = conn.createStatement()) {
+            for (String query : schema.split(";")) {
+                if (query.isBlank()) continue;
+                stmt.execute(query);
+            }
+        }
+        return source;
+    }
+}
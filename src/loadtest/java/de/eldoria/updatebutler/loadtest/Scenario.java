@@ -0,0 +1,177 @@
+package de.eldoria.updatebutler.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * A closed loop workload. Every worker sends its next request as soon as the previous response was read.
+ */
+class Scenario {
+    private final String name;
+    private final int concurrency;
+    private final BiFunction<SplittableRandom, String, HttpRequest> requests;
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * Create a new scenario.
+     *
+     * @param name        name in the report
+     * @param concurrency amount of parallel workers
+     * @param requests    creates the next request of a worker from its random source and client address
+     */
+    Scenario(String name, int concurrency, BiFunction<SplittableRandom, String, HttpRequest> requests) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.requests = requests;
+    }
+
+    void start(HttpClient client, String[] clients, long seed) {
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(client, clients, new SplittableRandom(seed + i));
+            worker.thread = new Thread(worker, "Load " + name + " " + i);
+            worker.thread.setDaemon(true);
+            workers.add(worker);
+            worker.thread.start();
+        }
+    }
+
+    void startMeasurement() {
+        for (Worker worker : workers) worker.measuring = true;
+    }
+
+    void stop() throws InterruptedException {
+        for (Worker worker : workers) worker.running = false;
+        for (Worker worker : workers) worker.thread.join();
+    }
+
+    boolean isActive() {
+        return concurrency > 0;
+    }
+
+    /**
+     * Summarize the measured requests.
+     *
+     * @param seconds measured duration
+     *
+     * @return report line
+     */
+    String report(double seconds) {
+        long count = 0;
+        long bytes = 0;
+        long errors = 0;
+        long[] status = new long[6];
+        long rateLimited = 0;
+        for (Worker worker : workers) {
+            count += worker.count;
+            bytes += worker.bytes;
+            errors += worker.errors;
+            rateLimited += worker.rateLimited;
+            for (int i = 0; i < status.length; i++) status[i] += worker.status[i];
+        }
+        long[] latencies = new long[(int) count];
+        int offset = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            offset += worker.count;
+        }
+        Arrays.sort(latencies);
+        return String.format(Locale.ROOT,
+                "%-9s c=%-4d requests=%-9d %10.1f req/s %8.2f MB/s  p50=%s p99=%s p999=%s max=%s"
+                        + "  2xx=%d 3xx=%d 4xx=%d (429=%d) 5xx=%d errors=%d",
+                name, concurrency, count, count / seconds, bytes / seconds / (1024 * 1024),
+                millis(percentile(latencies, 0.5)), millis(percentile(latencies, 0.99)),
+                millis(percentile(latencies, 0.999)), millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1]),
+                status[2], status[3], status[4], rateLimited, status[5], errors);
+    }
+
+    /**
+     * Create a request of a simulated client. The server trusts the forwarded address of local proxies.
+     *
+     * @param uri    uri of the request
+     * @param client simulated client address
+     *
+     * @return request builder
+     */
+    static HttpRequest.Builder request(String uri, String client) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .timeout(Duration.ofSeconds(30))
+                .header("X-Forwarded-For", client);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private final class Worker implements Runnable {
+        private final HttpClient client;
+        private final String[] clients;
+        private final SplittableRandom random;
+        private Thread thread;
+        private volatile boolean running = true;
+        private volatile boolean measuring;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long bytes;
+        private long errors;
+        private long rateLimited;
+        private final long[] status = new long[6];
+
+        private Worker(HttpClient client, String[] clients, SplittableRandom random) {
+            this.client = client;
+            this.clients = clients;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[64 * 1024];
+            while (running) {
+                HttpRequest request = requests.apply(random, clients[random.nextInt(clients.length)]);
+                long start = System.nanoTime();
+                int code;
+                long read = 0;
+                try {
+                    HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                    code = response.statusCode();
+                    try (InputStream body = response.body()) {
+                        int n;
+                        while ((n = body.read(buffer)) != -1) read += n;
+                    }
+                } catch (IOException e) {
+                    code = -1;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long latency = System.nanoTime() - start;
+                if (!measuring) continue;
+                if (code == -1) {
+                    errors++;
+                    continue;
+                }
+                if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                latencies[count++] = latency;
+                bytes += read;
+                if (code == 429) rateLimited++;
+                status[code / 100 < status.length ? code / 100 : 0]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+create table if not exists debugs
+(
+    id            int auto_increment primary key,
+    hash          varchar(64) not null unique,
+    deletion_hash varchar(64) not null
+);
+
+create table if not exists debug_data
+(
+    id              int primary key,
+    plugin_meta     clob not null,
+    server_meta     clob not null,
+    additional_data clob null,
+    log_meta        clob null
+);
+
+create table if not exists debug_configs
+(
+    id       int auto_increment primary key,
+    debug_id int          not null,
+    path     varchar(512) not null,
+    config   clob         not null
+);
+
+create index if not exists debug_configs_id_index
+    on debug_configs (debug_id);
@@ -2,13 +2,24 @@ package de.eldoria.updatebutler;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import de.eldoria.updatebutler.api.WebAPI;
+import de.eldoria.updatebutler.artifacts.ArtifactCache;
+import de.eldoria.updatebutler.artifacts.ArtifactStore;
 import de.eldoria.updatebutler.config.Configuration;
 import de.eldoria.updatebutler.config.DBSettings;
 import de.eldoria.updatebutler.listener.CommandListener;
+import de.eldoria.updatebutler.config.MetricsSettings;
 import de.eldoria.updatebutler.listener.ReleaseCreateListener;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
+import de.eldoria.updatebutler.metrics.MetricsServer;
+import de.eldoria.updatebutler.scheduler.ArtifactCollector;
+import de.eldoria.updatebutler.scheduler.DownloadCounterFlush;
 import de.eldoria.updatebutler.scheduler.TimeChannelScheduler;
 import de.eldoria.updatebutler.util.ArgumentParser;
+import de.eldoria.updatebutler.util.FileUtil;
+import de.eldoria.updatebutler.webhook.WebhookQueue;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
@@ -20,6 +31,7 @@ import javax.sql.DataSource;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -39,6 +51,7 @@ public final class UpdateButler {
     private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
     private ShardManager shardManager = null;
     private WebAPI webAPI;
+    private WebhookQueue webhookQueue;
     private DataSource source;
 
     private UpdateButler() throws IOException {
@@ -55,9 +68,15 @@ public final class UpdateButler {
         shardManager.addEventListener(commandListener);
 
         initializeDatabase();
-        webAPI = new WebAPI(configuration, source);
+        ArtifactStore artifactStore = new ArtifactStore(Paths.get(FileUtil.home(), "artifacts"));
+        configuration.setArtifactStore(artifactStore);
+        configuration.setArtifactCache(new ArtifactCache(configuration.getArtifacts()));
         configuration.setReleaseListener(
                 new ReleaseCreateListener(configuration, shardManager, new ArgumentParser(shardManager)));
+        webhookQueue = new WebhookQueue(configuration, Paths.get(FileUtil.home(), "webhooks"));
+        webAPI = new WebAPI(configuration, source, webhookQueue);
+        webhookQueue.start();
+        startMetrics();
         int min = 15 - (LocalDateTime.now().get(ChronoField.MINUTE_OF_HOUR) % 15) - 1;
         if (min < 1) {
             min = 14;
@@ -66,6 +85,15 @@ public final class UpdateButler {
         sec += 15;
         log.info("Next time channel update in {} min {} sec", min, sec);
         executorService.scheduleAtFixedRate(new TimeChannelScheduler(shardManager, configuration), min * 60 + sec, 60 * 15, TimeUnit.SECONDS);
+        executorService.scheduleWithFixedDelay(new DownloadCounterFlush(configuration), 60, 60, TimeUnit.SECONDS);
+        int collectInterval = configuration.getArtifacts().getCollectIntervalMinutes();
+        executorService.scheduleWithFixedDelay(new ArtifactCollector(configuration, artifactStore),
+                collectInterval, collectInterval, TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // running webhook jobs add releases. Stop them first, so their releases are part of the flush.
+            webhookQueue.stop();
+            configuration.flush();
+        }, "Configuration shutdown flush"));
     }
 
     public static void main(String[] args) throws LoginException, IOException {
@@ -90,6 +118,16 @@ public final class UpdateButler {
         log.info("{} shards initialized", shardManager.getShardsTotal());
     }
 
+    private void startMetrics() {
+        MetricsSettings settings = configuration.getMetrics();
+        if (!settings.isEnabled()) return;
+        try {
+            new MetricsServer(Metrics.registry()).start(settings.getHost(), settings.getPort());
+        } catch (IOException e) {
+            log.error("Could not start metrics server.", e);
+        }
+    }
+
     private void initializeDatabase() throws IllegalStateException {
         DBSettings settings = configuration.getDbSettings();
         Properties props = new Properties();
@@ -104,7 +142,16 @@ public final class UpdateButler {
 
         config.setMaximumPoolSize(settings.getMaxConnections());
 
-        source = new HikariDataSource(config);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        source = dataSource;
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        MetricsRegistry metrics = Metrics.registry();
+        metrics.gauge("updatebutler_db_connections", "Database connections by state.",
+                pool::getActiveConnections, "state", "active");
+        metrics.gauge("updatebutler_db_connections", "Database connections by state.",
+                pool::getIdleConnections, "state", "idle");
+        metrics.gauge("updatebutler_db_connections_pending", "Threads waiting for a database connection.",
+                pool::getThreadsAwaitingConnection);
 
         try (Connection conn = source.getConnection()) {
             boolean valid = conn.isValid(10000);
@@ -0,0 +1,64 @@
+package de.eldoria.updatebutler.api;
+
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes one line per request to the access logger after the response was completed and records the request
+ * metrics.
+ * <p>
+ * Format: {@code client "METHOD path" status bytes latency}. Query strings are not logged.
+ */
+public class AccessLog implements RequestLog {
+    private static final Logger ACCESS = LoggerFactory.getLogger("de.eldoria.updatebutler.access");
+    private final ClientAddressResolver resolver;
+    /**
+     * Request counters by status class. Index 0 counts invalid status codes.
+     */
+    private final Counter[] requests = new Counter[6];
+    private final Counter bytes;
+    private final Histogram latencies;
+
+    public AccessLog(ClientAddressResolver resolver) {
+        this.resolver = resolver;
+        MetricsRegistry registry = Metrics.registry();
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = registry.counter("updatebutler_http_requests_total", "Completed http requests.",
+                    "status", i == 0 ? "other" : i + "xx");
+        }
+        bytes = registry.counter("updatebutler_http_response_bytes_total", "Bytes written to http responses.");
+        latencies = registry.histogram("updatebutler_http_request_duration_seconds",
+                "Time from receiving a request until the response was completed.");
+    }
+
+    @Override
+    public void log(Request request, Response response) {
+        long latency = System.currentTimeMillis() - request.getTimeStamp();
+        MetaData.Response committed = response.getCommittedMetaData();
+        int status = committed != null ? committed.getStatus() : response.getStatus();
+        long written = response.getHttpChannel().getBytesWritten();
+        int statusClass = status / 100;
+        requests[statusClass > 0 && statusClass < requests.length ? statusClass : 0].inc();
+        bytes.add(written);
+        latencies.record(TimeUnit.MILLISECONDS.toNanos(latency));
+
+        if (!ACCESS.isInfoEnabled()) return;
+        ACCESS.info("{} \"{} {}\" {} {} {}ms",
+                resolver.resolve(request),
+                request.getMethod(),
+                request.getRequestURI(),
+                status,
+                written,
+                latency);
+    }
+}
@@ -0,0 +1,127 @@
+package de.eldoria.updatebutler.api;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Compact representation of a ip address.
+ * <p>
+ * Addresses are stored as two longs. IPv4 addresses are stored as their 32 bit value in the IPv4 mapped IPv6 range,
+ * which makes {@code 1.2.3.4} and {@code ::ffff:1.2.3.4} the same client.
+ */
+public final class ClientAddress {
+    private static final long IPV4_MAPPED = 0xFFFF_0000_0000L;
+    private final long high;
+    private final long low;
+
+    private ClientAddress(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Parse a ip address literal. Host names are not resolved.
+     *
+     * @param address ip address literal. May be null
+     *
+     * @return parsed address or null if the value is not a ip address
+     */
+    public static ClientAddress parse(String address) {
+        if (address == null) return null;
+        String value = address.trim();
+        if (value.startsWith("[") && value.endsWith("]")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        if (value.isEmpty() || !InetAddresses.isInetAddress(value)) return null;
+        return of(InetAddresses.forString(value).getAddress());
+    }
+
+    /**
+     * Create a address from the raw bytes of a ip address.
+     *
+     * @param bytes 4 or 16 bytes
+     *
+     * @return address
+     */
+    static ClientAddress of(byte[] bytes) {
+        if (bytes.length == 4) {
+            return new ClientAddress(0, IPV4_MAPPED | (toLong(bytes, 0, 4) & 0xFFFF_FFFFL));
+        }
+        return new ClientAddress(toLong(bytes, 0, 8), toLong(bytes, 8, 8));
+    }
+
+    private static long toLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = value << 8 | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    public boolean isIPv4() {
+        return high == 0 && (low & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED;
+    }
+
+    /**
+     * Check if this address is part of a network.
+     *
+     * @param network      address of the network
+     * @param prefixLength length of the network prefix in bits. Counted on the IPv6 representation
+     *
+     * @return true if the address is part of the network
+     */
+    boolean isInNetwork(ClientAddress network, int prefixLength) {
+        if (prefixLength <= 0) return true;
+        if (prefixLength <= 64) {
+            long mask = -1L << (64 - prefixLength);
+            return (high & mask) == (network.high & mask);
+        }
+        if (high != network.high) return false;
+        if (prefixLength >= 128) return low == network.low;
+        long mask = -1L << (128 - prefixLength);
+        return (low & mask) == (network.low & mask);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ClientAddress)) return false;
+        ClientAddress that = (ClientAddress) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes;
+        if (isIPv4()) {
+            bytes = new byte[4];
+            write(bytes, 0, low, 4);
+        } else {
+            bytes = new byte[16];
+            write(bytes, 0, high, 8);
+            write(bytes, 8, low, 8);
+        }
+        try {
+            InetAddress address = InetAddress.getByAddress(bytes);
+            return address instanceof Inet4Address ? address.getHostAddress() : InetAddresses.toAddrString(address);
+        } catch (UnknownHostException e) {
+            // only thrown for invalid lengths
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void write(byte[] bytes, int offset, long value, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
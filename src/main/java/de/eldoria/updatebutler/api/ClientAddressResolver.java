@@ -0,0 +1,154 @@
+package de.eldoria.updatebutler.api;
+
+import lombok.extern.slf4j.Slf4j;
+import spark.Request;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the address of the client of a request.
+ * <p>
+ * Forwarding headers are only evaluated when the request was received from a trusted proxy. The X-Forwarded-For
+ * chain is walked from the nearest hop and the first address which is not a trusted proxy is the client. Clients can
+ * prepend arbitrary addresses to the chain, but can not hide their own address this way.
+ */
+@Slf4j
+public class ClientAddressResolver {
+    private static final String ATTRIBUTE = ClientAddressResolver.class.getName();
+    /**
+     * Address used when the remote address of a request can not be parsed.
+     */
+    private static final ClientAddress UNKNOWN = ClientAddress.parse("::");
+    private static final long WARNING_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    private final List<Network> trustedProxies;
+    private final AtomicLong lastUntrustedWarning = new AtomicLong(-WARNING_INTERVAL);
+
+    /**
+     * Create a new resolver.
+     *
+     * @param trustedProxies trusted proxies in CIDR notation. A single address is a network of this address
+     */
+    public ClientAddressResolver(Collection<String> trustedProxies) {
+        List<Network> networks = new ArrayList<>();
+        for (String proxy : trustedProxies) {
+            Network network = Network.parse(proxy);
+            if (network == null) {
+                log.warn("Invalid trusted proxy {}. Use an ip address or CIDR notation.", proxy);
+                continue;
+            }
+            networks.add(network);
+        }
+        this.trustedProxies = Collections.unmodifiableList(networks);
+    }
+
+    /**
+     * Resolve the client of a request. The result is cached in the request.
+     *
+     * @param request request
+     *
+     * @return address of the client
+     */
+    public ClientAddress resolve(Request request) {
+        return resolve(request.raw());
+    }
+
+    /**
+     * Resolve the client of a servlet request. The result is cached in the request.
+     *
+     * @param request request
+     *
+     * @return address of the client
+     */
+    public ClientAddress resolve(HttpServletRequest request) {
+        Object cached = request.getAttribute(ATTRIBUTE);
+        if (cached instanceof ClientAddress) return (ClientAddress) cached;
+        ClientAddress client = resolveClient(request);
+        request.setAttribute(ATTRIBUTE, client);
+        return client;
+    }
+
+    private ClientAddress resolveClient(HttpServletRequest request) {
+        ClientAddress remote = ClientAddress.parse(request.getRemoteAddr());
+        if (remote == null) return UNKNOWN;
+        if (!isTrusted(remote)) {
+            if (request.getHeader("X-Forwarded-For") != null) warnUntrusted(remote);
+            return remote;
+        }
+
+        ClientAddress client = remote;
+        Enumeration<String> forwarded = request.getHeaders("X-Forwarded-For");
+        if (forwarded != null && forwarded.hasMoreElements()) {
+            List<String> hops = new ArrayList<>();
+            while (forwarded.hasMoreElements()) {
+                Collections.addAll(hops, forwarded.nextElement().split(","));
+            }
+            for (int i = hops.size() - 1; i >= 0; i--) {
+                ClientAddress hop = ClientAddress.parse(hops.get(i));
+                // a malformed entry can not be trusted. The last valid hop is the client.
+                if (hop == null) break;
+                client = hop;
+                if (!isTrusted(hop)) break;
+            }
+            return client;
+        }
+
+        ClientAddress realIp = ClientAddress.parse(request.getHeader("X-Real-IP"));
+        return realIp == null ? remote : realIp;
+    }
+
+    /**
+     * A proxy which is missing in the trusted proxies makes all its clients share one rate limit. Logged at most every
+     * {@link #WARNING_INTERVAL}, as clients may send the header as well.
+     */
+    private void warnUntrusted(ClientAddress remote) {
+        long now = System.currentTimeMillis();
+        long last = lastUntrustedWarning.get();
+        if (now - last < WARNING_INTERVAL || !lastUntrustedWarning.compareAndSet(last, now)) return;
+        log.warn("Ignored X-Forwarded-For of {}, which is not a trusted proxy. All clients of a proxy share its rate "
+                + "limits. Add the proxy to trusted_proxies if it is one.", remote);
+    }
+
+    private boolean isTrusted(ClientAddress address) {
+        for (Network network : trustedProxies) {
+            if (address.isInNetwork(network.address, network.prefixLength)) return true;
+        }
+        return false;
+    }
+
+    private static final class Network {
+        private final ClientAddress address;
+        private final int prefixLength;
+
+        private Network(ClientAddress address, int prefixLength) {
+            this.address = address;
+            this.prefixLength = prefixLength;
+        }
+
+        static Network parse(String cidr) {
+            if (cidr == null) return null;
+            int slash = cidr.indexOf('/');
+            ClientAddress address = ClientAddress.parse(slash == -1 ? cidr : cidr.substring(0, slash));
+            if (address == null) return null;
+            int maxLength = address.isIPv4() ? 32 : 128;
+            int length = maxLength;
+            if (slash != -1) {
+                try {
+                    length = Integer.parseInt(cidr.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (length < 0 || length > maxLength) return null;
+            }
+            // IPv4 networks are stored in the mapped IPv6 range
+            return new Network(address, address.isIPv4() ? length + 96 : length);
+        }
+    }
+}
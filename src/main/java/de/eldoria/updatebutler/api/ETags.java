@@ -0,0 +1,125 @@
+package de.eldoria.updatebutler.api;
+
+import spark.Request;
+import spark.Response;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * Helper for conditional requests with entity tags and modification dates.
+ */
+public final class ETags {
+    private static final int NOT_MODIFIED = 304;
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH)
+            .withZone(ZoneOffset.UTC);
+
+    private ETags() {
+    }
+
+    /**
+     * Create a strong entity tag.
+     *
+     * @param parts parts of the tag. Parts are joined with a dash.
+     *
+     * @return quoted entity tag
+     */
+    public static String of(String... parts) {
+        return "\"" + String.join("-", parts) + "\"";
+    }
+
+    /**
+     * Set the entity tag of the response and check if the client already has the current representation.
+     * <p>
+     * If the tag matches the status of the response is set to 304 and the body has to be empty.
+     *
+     * @param request  request of the client
+     * @param response response to send
+     * @param etag     entity tag of the current representation
+     *
+     * @return true if the client has the current representation
+     */
+    public static boolean notModified(Request request, Response response, String etag) {
+        response.header("ETag", etag);
+        if (!matches(request.headers("If-None-Match"), etag)) return false;
+        response.status(NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Set the validators of the response and check if the client already has the current representation.
+     * <p>
+     * If-Modified-Since is only evaluated when the request has no If-None-Match header. If the client has the current
+     * representation the status of the response is set to 304 and the body has to be empty.
+     *
+     * @param request      request of the client
+     * @param response     response to send
+     * @param etag         entity tag of the current representation or null if it has none
+     * @param lastModified time the current representation was last modified
+     *
+     * @return true if the client has the current representation
+     */
+    public static boolean notModified(Request request, Response response, String etag, Instant lastModified) {
+        response.header("Last-Modified", HTTP_DATE.format(lastModified));
+        if (etag != null) response.header("ETag", etag);
+        String ifNoneMatch = request.headers("If-None-Match");
+        boolean current = ifNoneMatch != null
+                ? matches(ifNoneMatch, etag)
+                : notModifiedSince(request.headers("If-Modified-Since"), lastModified);
+        if (!current) return false;
+        response.status(NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Check if a representation was not modified after the date of a If-Modified-Since header.
+     *
+     * @param header       value of the header. May be null
+     * @param lastModified time the representation was last modified
+     *
+     * @return true if the date is valid, not in the future and the representation was not modified after it
+     */
+    public static boolean notModifiedSince(String header, Instant lastModified) {
+        if (header == null) return false;
+        Instant since;
+        try {
+            since = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            // invalid and obsolete date formats are ignored
+            return false;
+        }
+        // dates in the future are invalid as well
+        if (since.isAfter(Instant.now())) return false;
+        // http dates have a precision of seconds
+        return !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+    }
+
+    /**
+     * Check if a entity tag is contained in a If-None-Match header. Uses weak comparison as required for If-None-Match.
+     *
+     * @param header value of the header. May be null
+     * @param etag   entity tag to check
+     *
+     * @return true if the tag is contained
+     */
+    public static boolean matches(String header, String etag) {
+        if (header == null || etag == null) return false;
+        String opaque = opaque(etag);
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate)) return true;
+            if (opaque(candidate).equals(opaque)) return true;
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
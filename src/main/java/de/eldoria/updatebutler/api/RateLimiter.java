@@ -1,40 +1,101 @@
 package de.eldoria.updatebutler.api;
 
-import com.google.api.client.http.HttpStatusCodes;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import de.eldoria.updatebutler.config.RateLimitPolicy;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Metrics;
 import lombok.extern.slf4j.Slf4j;
 import spark.Request;
+import spark.Response;
 
-import java.time.Instant;
-import java.time.temporal.TemporalUnit;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static spark.Spark.halt;
 
+/**
+ * Token bucket rate limiter.
+ * <p>
+ * The bucket of a client is stored as a single long in the virtual scheduling form: the time at which the bucket
+ * would be full again. A request takes one token by moving this time one refill interval into the future and is
+ * denied if that would exceed the burst. The state is updated with a compare and set, so clients never block each
+ * other.
+ */
 @Slf4j
 public class RateLimiter {
+    public static final int STATUS_TOO_MANY_REQUESTS = 429;
+    private static final long EMPTY = Long.MIN_VALUE;
 
-    private final Cache<String, Instant> rateLimit = CacheBuilder.newBuilder()
-            .expireAfterAccess(10, TimeUnit.MINUTES)
-            .build();
+    private final Cache<ClientAddress, AtomicLong> buckets;
+    private final ClientAddressResolver resolver;
+    private final Counter rejected;
+    /**
+     * Nanoseconds until a token is refilled.
+     */
+    private final long interval;
+    /**
+     * Nanoseconds the full time of a bucket may be ahead of now.
+     */
+    private final long tolerance;
 
-    private final long time;
-    private final TemporalUnit timeUnit;
-
-    public RateLimiter(long time, TemporalUnit timeUnit) {
-        this.time = time;
-        this.timeUnit = timeUnit;
+    /**
+     * Create a new rate limiter.
+     *
+     * @param route      name of the limited route for metrics
+     * @param policy     limits of a single client
+     * @param maxClients maximum amount of tracked clients
+     * @param resolver   resolver for client addresses
+     */
+    public RateLimiter(String route, RateLimitPolicy policy, long maxClients, ClientAddressResolver resolver) {
+        this.resolver = resolver;
+        this.rejected = Metrics.registry().counter("updatebutler_rate_limited_total",
+                "Requests which were denied by a rate limiter.", "route", route);
+        this.interval = (long) (TimeUnit.MINUTES.toNanos(1) / Math.max(policy.getPerMinute(), 0.001));
+        this.tolerance = interval * (Math.max(policy.getBurst(), 1) - 1);
+        this.buckets = CacheBuilder.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Math.max(TimeUnit.NANOSECONDS.toMinutes(interval + tolerance), 1) + 1, TimeUnit.MINUTES)
+                .build();
     }
 
-    public void assertRateLimit(Request request) throws ExecutionException {
-        String ip = request.headers("X-Real-IP");
-        Instant lastAccess = rateLimit.get(ip, () -> Instant.now().minus(time + 1, timeUnit));
-        if (lastAccess.isAfter(Instant.now().minus(time, timeUnit))) {
-            log.trace("Rate limited. Request denied.");
-            halt(HttpStatusCodes.STATUS_CODE_BAD_REQUEST, "You are rate limited. Please wait.");
+    /**
+     * Take a token of a client.
+     *
+     * @param key address of the client
+     *
+     * @return 0 if the request is allowed or the nanoseconds until the next token is available
+     */
+    public long tryAcquire(ClientAddress key) {
+        AtomicLong bucket = buckets.asMap().computeIfAbsent(key, k -> new AtomicLong(EMPTY));
+        long now = System.nanoTime();
+        while (true) {
+            long full = bucket.get();
+            long base = full == EMPTY ? now : Math.max(full, now);
+            long ahead = base - now;
+            if (ahead > tolerance) {
+                return ahead - tolerance;
+            }
+            if (bucket.compareAndSet(full, base + interval)) {
+                return 0;
+            }
         }
-        rateLimit.put(ip, Instant.now());
+    }
+
+    /**
+     * Take a token of the client of a request. Halts the request with 429 and a Retry-After header if the client is
+     * rate limited.
+     *
+     * @param request  request
+     * @param response response of the request
+     */
+    public void assertRateLimit(Request request, Response response) {
+        long wait = tryAcquire(resolver.resolve(request));
+        if (wait == 0) return;
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+        rejected.inc();
+        log.trace("Rate limited. Request denied.");
+        response.header("Retry-After", Long.toString(seconds));
+        halt(STATUS_TOO_MANY_REQUESTS, "You are rate limited. Please wait.");
     }
 }
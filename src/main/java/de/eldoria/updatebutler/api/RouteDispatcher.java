@@ -0,0 +1,118 @@
+package de.eldoria.updatebutler.api;
+
+import de.eldoria.updatebutler.config.ExecutionSettings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Limits the concurrent requests per route class, which keeps a share of the jetty threads free for every route
+ * class.
+ * <p>
+ * Requests above the limit are suspended without blocking a thread until a permit is free. Requests are answered with
+ * 503 if the queue of their route class is full or they waited longer than the maximum wait of their route class.
+ * Routes without a route class are not limited.
+ */
+public class RouteDispatcher extends HandlerWrapper {
+    /**
+     * Request attribute which holds the {@link RouteLimit} whose permit was handed over to a dispatched request.
+     */
+    static final String PERMIT = RouteDispatcher.class.getName() + ".permit";
+    private static final String QUEUED = RouteDispatcher.class.getName() + ".queued";
+    private final RouteLimit check;
+    private final RouteLimit download;
+    private final RouteLimit debug;
+    private final RouteLimit webhook;
+
+    public RouteDispatcher(ExecutionSettings settings) {
+        check = new RouteLimit("check", settings.getCheck());
+        download = new RouteLimit("download", settings.getDownload());
+        debug = new RouteLimit("debug", settings.getDebug());
+        webhook = new RouteLimit("webhook", settings.getWebhook());
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        RouteLimit limit = limit(target);
+        if (limit == null) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        if (request.getAttribute(PERMIT) == limit) {
+            request.removeAttribute(PERMIT);
+            limit.recordWait((Long) request.getAttribute(QUEUED));
+        } else if (!limit.tryAcquire()) {
+            AsyncContext async = request.startAsync();
+            async.setTimeout(limit.getMaxWait());
+            async.addListener(new Expiry(limit));
+            request.setAttribute(QUEUED, System.nanoTime());
+            if (!limit.enqueue(async)) {
+                reject(async);
+            }
+            return;
+        }
+
+        try {
+            super.handle(target, baseRequest, request, response);
+        } finally {
+            limit.release();
+        }
+    }
+
+    private static void reject(AsyncContext async) {
+        // jetty answers unhandled requests with 404 when they complete
+        Request.getBaseRequest(async.getRequest()).setHandled(true);
+        HttpServletResponse response = (HttpServletResponse) async.getResponse();
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+        async.complete();
+    }
+
+    private RouteLimit limit(String target) {
+        if (target.startsWith("/check")) return check;
+        if (target.startsWith("/download")) return download;
+        if (target.startsWith("/debug/")) return debug;
+        if (target.startsWith("/webhook/")) return webhook;
+        return null;
+    }
+
+    /**
+     * Rejects a queued request when it waited too long. A request which was dispatched in the meantime holds a permit
+     * and is left to the dispatch.
+     */
+    private static final class Expiry implements AsyncListener {
+        private final RouteLimit limit;
+
+        private Expiry(RouteLimit limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (limit.expire(event.getAsyncContext())) {
+                reject(event.getAsyncContext());
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
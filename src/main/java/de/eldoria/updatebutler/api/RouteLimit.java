@@ -0,0 +1,130 @@
+package de.eldoria.updatebutler.api;
+
+import de.eldoria.updatebutler.config.RouteLimitSettings;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
+
+import javax.servlet.AsyncContext;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit of a route class.
+ * <p>
+ * Requests above the limit are suspended and dispatched again once a running request released its permit. The permit
+ * is handed over to the dispatched request.
+ */
+class RouteLimit {
+    private final Semaphore permits;
+    private final Queue<AsyncContext> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int maxQueued;
+    private final long maxWait;
+    private final Counter rejected;
+    private final Histogram wait;
+
+    /**
+     * Create a new route limit.
+     *
+     * @param name     name of the route class
+     * @param settings limit and queue size
+     */
+    RouteLimit(String name, RouteLimitSettings settings) {
+        permits = new Semaphore(settings.getConcurrency());
+        maxQueued = settings.getQueue();
+        maxWait = TimeUnit.SECONDS.toMillis(settings.getMaxWaitSeconds());
+        MetricsRegistry registry = Metrics.registry();
+        registry.gauge("updatebutler_route_requests", "Requests of a route class by state.",
+                () -> settings.getConcurrency() - permits.availablePermits(), "route_class", name, "state", "active");
+        registry.gauge("updatebutler_route_requests", "Requests of a route class by state.",
+                queued::get, "route_class", name, "state", "queued");
+        registry.gauge("updatebutler_route_requests", "Requests of a route class by state.",
+                settings::getConcurrency, "route_class", name, "state", "limit");
+        rejected = registry.counter("updatebutler_route_rejected_total",
+                "Requests rejected because the queue of the route class was full or they waited too long.",
+                "route_class", name);
+        wait = registry.histogram("updatebutler_route_wait_seconds",
+                "Time requests waited for a permit of their route class.", "route_class", name);
+    }
+
+    /**
+     * Acquire a permit without waiting.
+     *
+     * @return true if a permit was acquired. It has to be released with {@link #release()}.
+     */
+    boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Queue a suspended request. The request is dispatched again with the permit of the next released request.
+     *
+     * @param async suspended request
+     *
+     * @return false if the queue is full. The request was not queued.
+     */
+    boolean enqueue(AsyncContext async) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.inc();
+            return false;
+        }
+        waiting.add(async);
+        // a permit could have been released after the failed acquire. Hand it to the oldest request.
+        if (permits.tryAcquire()) {
+            release();
+        }
+        return true;
+    }
+
+    /**
+     * Remove a request from the queue after it waited for {@link #getMaxWait()}.
+     *
+     * @param async suspended request
+     *
+     * @return false if the request is not queued anymore, because it was dispatched with a permit
+     */
+    boolean expire(AsyncContext async) {
+        if (!waiting.remove(async)) return false;
+        queued.decrementAndGet();
+        rejected.inc();
+        return true;
+    }
+
+    /**
+     * Get the time a request may wait for a permit.
+     *
+     * @return time in milliseconds
+     */
+    long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Release a permit or hand it over to the oldest queued request.
+     */
+    void release() {
+        AsyncContext next = waiting.poll();
+        if (next == null) {
+            permits.release();
+            return;
+        }
+        queued.decrementAndGet();
+        next.getRequest().setAttribute(RouteDispatcher.PERMIT, this);
+        next.dispatch();
+    }
+
+    /**
+     * Record the time a dispatched request waited in the queue.
+     *
+     * @param start nano time when the request was queued
+     */
+    void recordWait(long start) {
+        wait.recordSince(start);
+    }
+}
@@ -0,0 +1,33 @@
+package de.eldoria.updatebutler.api;
+
+import de.eldoria.updatebutler.metrics.Histogram;
+import spark.Route;
+
+/**
+ * Route which records the duration of its handler.
+ * <p>
+ * Requests which are halted, like rate limited requests, are recorded as well.
+ */
+public final class TimedRoute {
+    private TimedRoute() {
+    }
+
+    /**
+     * Wrap a route.
+     *
+     * @param histogram histogram which records the durations
+     * @param route     route to wrap
+     *
+     * @return timed route
+     */
+    public static Route timed(Histogram histogram, Route route) {
+        return (request, response) -> {
+            long start = System.nanoTime();
+            try {
+                return route.handle(request, response);
+            } finally {
+                histogram.recordSince(start);
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package de.eldoria.updatebutler.api;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pool of jetty which starts a new virtual thread per task.
+ */
+@Slf4j
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private final ThreadFactory threads;
+    private final AtomicInteger running = new AtomicInteger();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private VirtualThreadPool(ThreadFactory threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Create a new virtual thread pool.
+     *
+     * @return the thread pool or an empty optional if the runtime does not support virtual threads
+     */
+    public static Optional<VirtualThreadPool> create() {
+        try {
+            // resolved at runtime, the project is compiled against java 11
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Web ", 0L);
+            return Optional.of(new VirtualThreadPool((ThreadFactory) builderClass.getMethod("factory").invoke(builder)));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Virtual threads are not available.", e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        threads.newThread(() -> {
+            running.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        }).start();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        stopped.countDown();
+    }
+
+    /**
+     * Get the amount of running tasks.
+     *
+     * @return running tasks
+     */
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
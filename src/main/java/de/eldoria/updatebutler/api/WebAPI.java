@@ -4,13 +4,17 @@ import com.google.api.client.http.HttpStatusCodes;
 import de.eldoria.updatebutler.api.debug.DebugAPI;
 import de.eldoria.updatebutler.api.updates.UpdatesAPI;
 import de.eldoria.updatebutler.config.Configuration;
+import de.eldoria.updatebutler.webhook.WebhookQueue;
 import lombok.extern.slf4j.Slf4j;
+import spark.Request;
+import spark.Response;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 import javax.sql.DataSource;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.time.temporal.ChronoUnit;
 import java.util.stream.Collectors;
 
 import static spark.Spark.afterAfter;
@@ -23,17 +27,25 @@ import static spark.Spark.port;
 
 @Slf4j
 public class WebAPI {
+    /**
+     * Maximum amount of characters of bodies in trace logs. Larger request bodies are not read for logging.
+     */
+    private static final int TRACE_BODY_LENGTH = 180;
     private final DebugAPI debugAPI;
     private final UpdatesAPI updatesAPI;
-    private final RateLimiter rateLimiter = new RateLimiter(1, ChronoUnit.SECONDS);
+    private final ClientAddressResolver resolver;
 
-    public WebAPI(Configuration configuration, DataSource source) {
+    public WebAPI(Configuration configuration, DataSource source, WebhookQueue webhookQueue) {
+        resolver = new ClientAddressResolver(configuration.getTrustedProxies());
         initAPI(configuration);
-        debugAPI = new DebugAPI(source, configuration);
-        updatesAPI = new UpdatesAPI(configuration);
+        debugAPI = new DebugAPI(source, configuration, resolver);
+        updatesAPI = new UpdatesAPI(configuration, webhookQueue, resolver);
     }
 
     private void initAPI(Configuration configuration) {
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                new EmbeddedJettyFactory(new WebServerFactory(new AccessLog(resolver),
+                        configuration.getExecution(), configuration.getCompression())));
         port(configuration.getPort());
         ipAddress(configuration.getHost());
 
@@ -72,25 +84,49 @@ public class WebAPI {
         }));
 
         before((request, response) -> {
-            log.trace("Received request on route: {} {}\nHeaders:\n{}\nBody:\n{}",
-                    request.requestMethod() + " " + request.uri(),
-                    request.queryString(),
-                    request.headers().stream().map(h -> "   " + h + ": " + request.headers(h))
-                            .collect(Collectors.joining("\n")),
-                    request.body().substring(0, Math.min(request.body().length(), 180)));
+            if (log.isTraceEnabled()) {
+                traceRequest(request);
+            }
             response.header("Access-Control-Allow-Origin", "*");
             response.header("Access-Control-Allow-Headers", "*");
             response.header("Content-Security-Policy", "default-src 'self'; script-src 'none'; frame-src 'none'; style-src 'self'; img-src eldoria.de discordapp.com; media-src 'none'");
         });
 
         afterAfter(((request, response) -> {
-            log.trace("Answered request on route: {} {}\nStatus: {}\nHeaders:\n{}\nBody:\n{}",
-                    request.requestMethod() + " " + request.uri(),
-                    request.queryString(),
-                    response.raw().getStatus(),
-                    response.raw().getHeaderNames().stream().map(h -> "   " + h + ": " + response.raw().getHeader(h))
-                            .collect(Collectors.joining("\n")),
-                    response.body().substring(0, Math.min(response.body().length(), 180)));
+            if (log.isTraceEnabled()) {
+                traceResponse(request, response);
+            }
         }));
     }
+
+    private void traceRequest(Request request) {
+        // the body is only read if it is small. Larger bodies would be buffered completely by spark.
+        int length = request.contentLength();
+        String body;
+        if (length <= 0) {
+            body = "";
+        } else if (length <= TRACE_BODY_LENGTH) {
+            body = request.body();
+        } else {
+            body = "<" + length + " bytes>";
+        }
+        log.trace("Received request on route: {} {} from {}\nHeaders:\n{}\nBody:\n{}",
+                request.requestMethod() + " " + request.uri(),
+                request.queryString(),
+                resolver.resolve(request),
+                request.headers().stream().map(h -> "   " + h + ": " + request.headers(h))
+                        .collect(Collectors.joining("\n")),
+                body);
+    }
+
+    private void traceResponse(Request request, Response response) {
+        String body = response.body();
+        log.trace("Answered request on route: {} {}\nStatus: {}\nHeaders:\n{}\nBody:\n{}",
+                request.requestMethod() + " " + request.uri(),
+                request.queryString(),
+                response.raw().getStatus(),
+                response.raw().getHeaderNames().stream().map(h -> "   " + h + ": " + response.raw().getHeader(h))
+                        .collect(Collectors.joining("\n")),
+                body == null ? "" : body.substring(0, Math.min(body.length(), TRACE_BODY_LENGTH)));
+    }
 }
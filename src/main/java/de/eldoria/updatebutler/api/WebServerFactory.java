@@ -0,0 +1,112 @@
+package de.eldoria.updatebutler.api;
+
+import de.eldoria.updatebutler.config.CompressionSettings;
+import de.eldoria.updatebutler.config.ExecutionMode;
+import de.eldoria.updatebutler.config.ExecutionSettings;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+import java.util.Optional;
+
+/**
+ * Creates the jetty server of spark with the same defaults as spark and registers the access log.
+ * <p>
+ * Requests are limited per route class if the execution mode is not {@link ExecutionMode#SHARED}. Responses are
+ * compressed if the client accepts gzip, except for release files which have precompressed variants.
+ */
+@Slf4j
+public class WebServerFactory implements JettyServerFactory {
+    private final RequestLog requestLog;
+    private final ExecutionSettings execution;
+    private final CompressionSettings compression;
+
+    public WebServerFactory(RequestLog requestLog, ExecutionSettings execution, CompressionSettings compression) {
+        this.requestLog = requestLog;
+        this.execution = execution;
+        this.compression = compression;
+    }
+
+    @Override
+    public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+        if (execution.getMode() == ExecutionMode.VIRTUAL) {
+            Optional<VirtualThreadPool> pool = VirtualThreadPool.create();
+            if (pool.isPresent()) {
+                return create(pool.get());
+            }
+            log.error("Execution mode virtual needs java 21, or java 19 or 20 with --enable-preview, for example set by "
+                    + "JAVA_TOOL_OPTIONS=--enable-preview. Virtual threads are not available on java {}. Using the "
+                    + "jetty thread pool.", Runtime.version());
+        }
+        if (maxThreads > 0) {
+            int min = minThreads > 0 ? minThreads : 8;
+            int idleTimeout = threadTimeoutMillis > 0 ? threadTimeoutMillis : 60000;
+            return create(new QueuedThreadPool(maxThreads, min, idleTimeout));
+        }
+        return create(null);
+    }
+
+    @Override
+    public Server create(ThreadPool threadPool) {
+        Server server = new SparkServer(threadPool, execution, compression);
+        server.setRequestLog(requestLog);
+        registerMetrics(server.getThreadPool());
+        return server;
+    }
+
+    private static void registerMetrics(ThreadPool pool) {
+        MetricsRegistry registry = Metrics.registry();
+        registry.gauge("updatebutler_jetty_threads", "Threads of the jetty thread pool by state.",
+                pool::getThreads, "state", "started");
+        registry.gauge("updatebutler_jetty_threads", "Threads of the jetty thread pool by state.",
+                pool::getIdleThreads, "state", "idle");
+        if (!(pool instanceof QueuedThreadPool)) return;
+        QueuedThreadPool queued = (QueuedThreadPool) pool;
+        registry.gauge("updatebutler_jetty_threads", "Threads of the jetty thread pool by state.",
+                queued::getBusyThreads, "state", "busy");
+        registry.gauge("updatebutler_jetty_threads", "Threads of the jetty thread pool by state.",
+                queued::getMaxThreads, "state", "max");
+        registry.gauge("updatebutler_jetty_queue", "Jobs waiting for a thread of the jetty thread pool.",
+                queued::getQueueSize);
+    }
+
+    /**
+     * Server which wraps the handler of spark into a {@link GzipHandler} and a {@link RouteDispatcher}.
+     */
+    private static class SparkServer extends Server {
+        private final ExecutionSettings execution;
+        private final CompressionSettings compression;
+
+        SparkServer(ThreadPool threadPool, ExecutionSettings execution, CompressionSettings compression) {
+            super(threadPool);
+            this.execution = execution;
+            this.compression = compression;
+        }
+
+        @Override
+        public void setHandler(Handler handler) {
+            if (compression.isEnabled()) {
+                GzipHandler gzip = new GzipHandler();
+                gzip.setMinGzipSize(compression.getMinSize());
+                gzip.setIncludedMethods("GET", "POST");
+                // release files are sent from their precompressed variants
+                gzip.setExcludedPaths("/download", "/download/*");
+                gzip.setHandler(handler);
+                handler = gzip;
+            }
+            if (execution.getMode() != ExecutionMode.SHARED) {
+                RouteDispatcher dispatcher = new RouteDispatcher(execution);
+                dispatcher.setHandler(handler);
+                handler = dispatcher;
+            }
+            super.setHandler(handler);
+        }
+    }
+}
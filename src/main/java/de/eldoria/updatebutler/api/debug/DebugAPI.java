@@ -3,24 +3,19 @@ package de.eldoria.updatebutler.api.debug;
 import com.google.api.client.http.HttpStatusCodes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import de.eldoria.updatebutler.api.ClientAddressResolver;
 import de.eldoria.updatebutler.api.RateLimiter;
-import de.eldoria.updatebutler.api.debug.data.EntryData;
-import de.eldoria.updatebutler.api.debug.data.PluginMetaData;
 import de.eldoria.updatebutler.config.Configuration;
 import de.eldoria.updatebutler.database.DebugData;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sql.DataSource;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
-import java.util.stream.Collectors;
 
+import static de.eldoria.updatebutler.api.TimedRoute.timed;
 import static spark.Spark.before;
 import static spark.Spark.get;
 import static spark.Spark.path;
@@ -31,32 +26,15 @@ public class DebugAPI {
 
     private final Gson gson = new GsonBuilder().serializeNulls().create();
     private final DebugData debugData;
-    private final Configuration configuration;
-    private final RateLimiter submitLimiter = new RateLimiter(10, ChronoUnit.SECONDS);
-
-    private static final String CONTENT =
-            "    <section class=\"w-full shadow-sm\">\n" +
-                    "        <details class=\"cursor-pointer\">\n" +
-                    "            <summary class=\"flex items-center bg-eldoria-accent text-white p-2 outline-none select-none\">\n" +
-                    "                <h3 class=\"text-xl\">{{ contentTitle }}</h3>\n" +
-                    "            </summary>\n" +
-                    "\n" +
-                    "            <pre class=\"whitespace-pre-wrap bg-eldoria-input break-all sm:break-normal p-2\">{{ content }}</pre>\n" +
-                    "        </details>\n" +
-                    "    </section>\n";
-    private final String pageTemplate;
-
-    public DebugAPI(DataSource source, Configuration configuration) {
+    private final RateLimiter submitLimiter;
+    private final DebugPage page;
+
+    public DebugAPI(DataSource source, Configuration configuration, ClientAddressResolver resolver) {
         debugData = new DebugData(source);
-        this.configuration = configuration;
+        this.submitLimiter = new RateLimiter("debug_submit", configuration.getRateLimits().getDebugSubmit(),
+                configuration.getRateLimits().getMaxClients(), resolver);
+        this.page = new DebugPage(configuration.getHostName());
         init();
-        try (BufferedReader inputStream = new BufferedReader(
-                new InputStreamReader(getClass().getClassLoader().getResourceAsStream("debugPage.html")))) {
-            pageTemplate = inputStream.lines().collect(Collectors.joining(System.lineSeparator()));
-        } catch (IOException e) {
-            log.error("Could not load debug page templace", e);
-            throw new IllegalStateException("Could not load debug page templace.", e);
-        }
     }
 
     private void init() {
@@ -64,8 +42,8 @@ public class DebugAPI {
             path("/v1", () -> {
                 before();
 
-                post("/submit", (request, response) -> {
-                    submitLimiter.assertRateLimit(request);
+                post("/submit", timed(duration("debug_submit"), (request, response) -> {
+                    submitLimiter.assertRateLimit(request, response);
 
                     DebugPayload debugPayload = gson.fromJson(request.body(), DebugPayload.class);
                     Optional<DebugResponse> data = debugData.submitDebug(debugPayload);
@@ -76,7 +54,7 @@ public class DebugAPI {
                     }
                     response.status(HttpStatusCodes.STATUS_CODE_UNPROCESSABLE_ENTITY);
                     return HttpStatusCodes.STATUS_CODE_UNPROCESSABLE_ENTITY;
-                });
+                }));
 
                 get("/delete/:hash", ((request, response) -> {
                     String hash = request.params(":hash");
@@ -95,17 +73,11 @@ public class DebugAPI {
 
                     debugData.deleteDebug(id.getAsInt());
 
-                    String page = pageTemplate.replace("{{ reportId }}", "none");
-                    page = page.replace("{{ title }}", "Report deleted.");
-                    page = page.replace("{{ pageUrl }}", configuration.getHostName() + "/debug/v1/delete/" + hash);
-                    page = page.replace("{{ favicon }}", "https://eldoria.de/favicon-196x196.png");
-                    page = page.replace("{{ content }}", "");
-
-                    response.body(page);
+                    response.body(page.deleted(hash));
                     response.status(HttpStatusCodes.STATUS_CODE_OK);
                     return response.body();
                 }));
-                get("/read/:hash", ((request, response) -> {
+                get("/read/:hash", timed(duration("debug_read"), (request, response) -> {
                     String hash = request.params(":hash");
 
                     if (hash == null) {
@@ -128,40 +100,7 @@ public class DebugAPI {
 
                     response.type("text/html");
 
-                    DebugPayload payload = debugPayload.get();
-
-                    List<String> contents = new ArrayList<>();
-                    PluginMetaData pluginMeta = payload.getPluginMeta();
-                    contents.add(getContent("Plugin Meta", payload.getPluginMeta()));
-                    contents.add(getContent("Server Meta", payload.getServerMeta()));
-                    for (EntryData entryData : payload.getAdditionalPluginMeta()) {
-                        contents.add(getContent(entryData.getName(), entryData.getContent()));
-                    }
-
-                    contents.add(getContent("Latest.log", payload.getLatestLog().getLog()));
-                    contents.add(getContent("Plugin Log", payload.getLatestLog().getPluginLog()));
-
-                    if (payload.getLatestLog().getInternalExceptions().length != 0) {
-                        contents.add(getContent("Internal Exceptions and Warnings",
-                                String.join("\n\n", payload.getLatestLog().getInternalExceptions())));
-                    }
-
-                    if (payload.getLatestLog().getExternalExceptions().length != 0) {
-                        contents.add(getContent("External Exceptions and Warnings",
-                                String.join("\n\n", payload.getLatestLog().getExternalExceptions())));
-                    }
-
-                    for (EntryData configDump : payload.getConfigDumps()) {
-                        contents.add(getContent(configDump.getName(), configDump.getContent()));
-                    }
-
-                    String page = pageTemplate.replace("{{ content }}", String.join("\n", contents));
-                    page = page.replace("{{ reportId }}", hash);
-                    page = page.replace("{{ title }}", "Report created for " + pluginMeta.getName() + " - " + pluginMeta.getVersion());
-                    page = page.replace("{{ pageUrl }}", configuration.getHostName() + "/debug/v1/read/" + hash);
-                    page = page.replace("{{ favicon }}", "https://eldoria.de/favicon-196x196.png");
-
-                    response.body(page);
+                    response.body(page.report(hash, debugPayload.get()));
 
                     response.status(HttpStatusCodes.STATUS_CODE_OK);
                     return response.body();
@@ -170,8 +109,9 @@ public class DebugAPI {
         });
     }
 
-    private String getContent(String title, Object content) {
-        return CONTENT.replace("{{ contentTitle }}", title).replace("{{ content }}", content.toString());
+    private static Histogram duration(String route) {
+        return Metrics.registry().histogram("updatebutler_route_duration_seconds", "Time spent in a route handler.",
+                "route", route);
     }
 
 }
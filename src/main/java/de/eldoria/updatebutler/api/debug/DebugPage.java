@@ -0,0 +1,105 @@
+package de.eldoria.updatebutler.api.debug;
+
+import de.eldoria.updatebutler.api.debug.data.EntryData;
+import de.eldoria.updatebutler.api.debug.data.PluginMetaData;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Renders the html pages of debug reports.
+ */
+@Slf4j
+class DebugPage {
+    private static final String FAVICON = "https://eldoria.de/favicon-196x196.png";
+    private static final String CONTENT =
+            "    <section class=\"w-full shadow-sm\">\n" +
+                    "        <details class=\"cursor-pointer\">\n" +
+                    "            <summary class=\"flex items-center bg-eldoria-accent text-white p-2 outline-none select-none\">\n" +
+                    "                <h3 class=\"text-xl\">{{ contentTitle }}</h3>\n" +
+                    "            </summary>\n" +
+                    "\n" +
+                    "            <pre class=\"whitespace-pre-wrap bg-eldoria-input break-all sm:break-normal p-2\">{{ content }}</pre>\n" +
+                    "        </details>\n" +
+                    "    </section>\n";
+    private final String pageTemplate;
+    private final String hostName;
+
+    DebugPage(String hostName) {
+        this.hostName = hostName;
+        try (BufferedReader inputStream = new BufferedReader(
+                new InputStreamReader(getClass().getClassLoader().getResourceAsStream("debugPage.html")))) {
+            pageTemplate = inputStream.lines().collect(Collectors.joining(System.lineSeparator()));
+        } catch (IOException e) {
+            log.error("Could not load debug page templace", e);
+            throw new IllegalStateException("Could not load debug page templace.", e);
+        }
+    }
+
+    /**
+     * Render the page of a report.
+     *
+     * @param hash    hash of the report
+     * @param payload content of the report
+     *
+     * @return html page
+     */
+    String report(String hash, DebugPayload payload) {
+        List<String> contents = new ArrayList<>();
+        PluginMetaData pluginMeta = payload.getPluginMeta();
+        contents.add(getContent("Plugin Meta", payload.getPluginMeta()));
+        contents.add(getContent("Server Meta", payload.getServerMeta()));
+        for (EntryData entryData : payload.getAdditionalPluginMeta()) {
+            contents.add(getContent(entryData.getName(), entryData.getContent()));
+        }
+
+        contents.add(getContent("Latest.log", payload.getLatestLog().getLog()));
+        contents.add(getContent("Plugin Log", payload.getLatestLog().getPluginLog()));
+
+        if (payload.getLatestLog().getInternalExceptions().length != 0) {
+            contents.add(getContent("Internal Exceptions and Warnings",
+                    String.join("\n\n", payload.getLatestLog().getInternalExceptions())));
+        }
+
+        if (payload.getLatestLog().getExternalExceptions().length != 0) {
+            contents.add(getContent("External Exceptions and Warnings",
+                    String.join("\n\n", payload.getLatestLog().getExternalExceptions())));
+        }
+
+        for (EntryData configDump : payload.getConfigDumps()) {
+            contents.add(getContent(configDump.getName(), configDump.getContent()));
+        }
+
+        String page = pageTemplate.replace("{{ content }}", String.join("\n", contents));
+        page = page.replace("{{ reportId }}", hash);
+        page = page.replace("{{ title }}", "Report created for " + pluginMeta.getName() + " - " + pluginMeta.getVersion());
+        page = page.replace("{{ pageUrl }}", hostName + "/debug/v1/read/" + hash);
+        page = page.replace("{{ favicon }}", FAVICON);
+        return page;
+    }
+
+    /**
+     * Render the page of a deleted report.
+     *
+     * @param deletionHash deletion hash of the report
+     *
+     * @return html page
+     */
+    String deleted(String deletionHash) {
+        String page = pageTemplate.replace("{{ reportId }}", "none");
+        page = page.replace("{{ title }}", "Report deleted.");
+        page = page.replace("{{ pageUrl }}", hostName + "/debug/v1/delete/" + deletionHash);
+        page = page.replace("{{ favicon }}", FAVICON);
+        page = page.replace("{{ content }}", "");
+        return page;
+    }
+
+    private String getContent(String title, Object content) {
+        return CONTENT.replace("{{ contentTitle }}", title).replace("{{ content }}", content.toString());
+    }
+}
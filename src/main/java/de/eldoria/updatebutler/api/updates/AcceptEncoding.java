@@ -0,0 +1,39 @@
+package de.eldoria.updatebutler.api.updates;
+
+/**
+ * Helper for the Accept-Encoding header.
+ */
+final class AcceptEncoding {
+    private AcceptEncoding() {
+    }
+
+    /**
+     * Check if a content coding is acceptable for the client.
+     *
+     * @param header value of the Accept-Encoding header. May be null
+     * @param coding content coding to check
+     *
+     * @return true if the coding is listed or matched by a wildcard without a quality of zero
+     */
+    static boolean accepts(String header, String coding) {
+        if (header == null) return false;
+        boolean wildcard = false;
+        for (String entry : header.split(",")) {
+            String[] parameters = entry.split(";");
+            String name = parameters[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (!parameter.startsWith("q=")) continue;
+                try {
+                    quality = Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    quality = 0;
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) return quality > 0;
+            if ("*".equals(name)) wildcard = quality > 0;
+        }
+        return wildcard;
+    }
+}
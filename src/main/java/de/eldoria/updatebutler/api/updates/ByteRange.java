@@ -0,0 +1,80 @@
+package de.eldoria.updatebutler.api.updates;
+
+/**
+ * A single byte range of a range request.
+ * <p>
+ * Only single ranges are supported. Requests with multiple or malformed ranges are answered with the full content as
+ * allowed by RFC 7233.
+ */
+final class ByteRange {
+    private static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+    private static final String UNIT = "bytes=";
+    private final long start;
+    private final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse the value of a range header.
+     *
+     * @param header value of the range header. May be null
+     * @param size   size of the content
+     *
+     * @return the requested range or null if the full content should be sent
+     */
+    static ByteRange parse(String header, long size) {
+        if (header == null || !header.regionMatches(true, 0, UNIT, 0, UNIT.length())) return null;
+        String spec = header.substring(UNIT.length()).trim();
+        if (spec.indexOf(',') != -1) return null;
+        int dash = spec.indexOf('-');
+        if (dash == -1) return null;
+
+        try {
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0 || size == 0) return UNSATISFIABLE;
+                return new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+
+            long start = Long.parseLong(spec.substring(0, dash));
+            String last = spec.substring(dash + 1);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) return null;
+            if (start >= size) return UNSATISFIABLE;
+            return new ByteRange(start, Math.min(end, size - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    boolean isSatisfiable() {
+        return this != UNSATISFIABLE;
+    }
+
+    long start() {
+        return start;
+    }
+
+    long end() {
+        return end;
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Get the value of the content range header for this range.
+     *
+     * @param size size of the full content
+     *
+     * @return content range value
+     */
+    String contentRange(long size) {
+        if (!isSatisfiable()) return "bytes */" + size;
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+}
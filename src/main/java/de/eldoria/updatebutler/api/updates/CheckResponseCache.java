@@ -0,0 +1,178 @@
+package de.eldoria.updatebutler.api.updates;
+
+import com.google.gson.Gson;
+import de.eldoria.updatebutler.api.ETags;
+import de.eldoria.updatebutler.config.Application;
+import de.eldoria.updatebutler.config.Release;
+import de.eldoria.updatebutler.config.ReleaseIndex;
+import de.eldoria.updatebutler.config.Version;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the serialized update check responses of all applications.
+ * <p>
+ * The answers of a application are rebuilt when the {@link ReleaseIndex} snapshot of the application changed.
+ */
+class CheckResponseCache {
+    private final Gson gson;
+    private final Map<Integer, Answers> answers = new ConcurrentHashMap<>();
+    private final byte[] unknown;
+
+    CheckResponseCache(Gson gson) {
+        this.gson = gson;
+        this.unknown = serialize(new UpdateCheckResponse(false, null, null));
+    }
+
+    /**
+     * Get the answers for the current latest releases of a application.
+     *
+     * @param application application
+     *
+     * @return answers of the application
+     */
+    Answers get(Application application) {
+        ReleaseIndex latest = application.getReleaseIndex();
+        Answers cached = answers.get(application.getId());
+        if (cached != null && cached.source == latest) {
+            return cached;
+        }
+        Answers rebuilt = new Answers(latest,
+                latest.getLatest().map(this::channel).orElse(null),
+                latest.getLatestStable().map(this::channel).orElse(null));
+        answers.put(application.getId(), rebuilt);
+        return rebuilt;
+    }
+
+    /**
+     * Drop the answers of a deleted application.
+     *
+     * @param application deleted application
+     */
+    void remove(Application application) {
+        answers.remove(application.getId());
+    }
+
+    /**
+     * Get the response for a unknown application or release.
+     *
+     * @return serialized empty response
+     */
+    byte[] unknown() {
+        return unknown;
+    }
+
+    private Channel channel(Release release) {
+        return new Channel(release,
+                serialize(new UpdateCheckResponse(true, release.getVersion(), release.getChecksum())),
+                serialize(new UpdateCheckResponse(false, release.getVersion(), release.getChecksum())));
+    }
+
+    private byte[] serialize(UpdateCheckResponse response) {
+        return gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static final class Answers {
+        private final ReleaseIndex source;
+        private final Channel dev;
+        private final Channel stable;
+
+        private Answers(ReleaseIndex source, Channel dev, Channel stable) {
+            this.source = source;
+            this.dev = dev;
+            this.stable = stable;
+        }
+
+        /**
+         * Get the answers of a release channel.
+         *
+         * @param dev true if dev builds are included
+         *
+         * @return answers of the channel or null if the channel has no release
+         */
+        Channel channel(boolean dev) {
+            return dev ? this.dev : stable;
+        }
+    }
+
+    static final class Channel {
+        private final Release latest;
+        private final byte[] updateAvailable;
+        private final byte[] upToDate;
+        private final String updateAvailableTag;
+        private final String upToDateTag;
+
+        private Channel(Release latest, byte[] updateAvailable, byte[] upToDate) {
+            this.latest = latest;
+            this.updateAvailable = updateAvailable;
+            this.upToDate = upToDate;
+            // the version is part of the body, identical files may be released under different versions.
+            String version = Integer.toHexString(latest.getVersion().hashCode());
+            // releases of old configurations may have no checksum
+            String content = latest.getChecksum() != null
+                    ? latest.getChecksum()
+                    : Long.toHexString(latest.getTimestamp());
+            this.updateAvailableTag = ETags.of(content, version, "update");
+            this.upToDateTag = ETags.of(content, version, "current");
+        }
+
+        Release latest() {
+            return latest;
+        }
+
+        /**
+         * Check if a update is available for a installed release.
+         *
+         * @param installed installed release
+         *
+         * @return true if the latest release is newer
+         */
+        boolean isUpdate(Release installed) {
+            if (installed == latest) return false;
+            Optional<Version> latestVersion = latest.getParsedVersion();
+            Optional<Version> installedVersion = installed.getParsedVersion();
+            if (latestVersion.isPresent() && installedVersion.isPresent()) {
+                return latestVersion.get().isNewerThan(installedVersion.get());
+            }
+            return latest.getTimestamp() > installed.getTimestamp();
+        }
+
+        /**
+         * Check if a update is available for a version which is not released. This is the case for deleted releases
+         * and local builds.
+         *
+         * @param installed installed version or null if the version could not be parsed
+         *
+         * @return true if the latest release is newer or the versions can not be compared
+         */
+        boolean isUpdate(Version installed) {
+            if (installed == null) return true;
+            return latest.getParsedVersion().map(version -> version.isNewerThan(installed)).orElse(true);
+        }
+
+        /**
+         * Get the serialized answer.
+         *
+         * @param update true if a update is available
+         *
+         * @return serialized response
+         */
+        byte[] answer(boolean update) {
+            return update ? updateAvailable : upToDate;
+        }
+
+        /**
+         * Get the entity tag of a answer.
+         *
+         * @param update true if a update is available
+         *
+         * @return strong entity tag
+         */
+        String etag(boolean update) {
+            return update ? updateAvailableTag : upToDateTag;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.eldoria.updatebutler.api.updates;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes release files to a response.
+ * <p>
+ * Files are memory mapped and handed to jetty, which writes the mapped pages to the socket without copying them through
+ * the heap. Cached files are already in direct memory and are handed to jetty as they are.
+ * <p>
+ * A mapping is only released when the garbage collector collects its buffer, which may take long with a small heap
+ * allocation rate. The mappings which were not collected yet are limited to {@link #MAX_MAPPINGS}, further files are
+ * transferred through a small buffer instead.
+ */
+final class FileDelivery {
+    /**
+     * Mappings which may exist at once. Stays well below the mapping limit of the operating system.
+     */
+    private static final int MAX_MAPPINGS = 1024;
+    private static final AtomicInteger MAPPINGS = new AtomicInteger();
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private FileDelivery() {
+    }
+
+    /**
+     * Write a section of a file to the response. Sets the content length of the response.
+     *
+     * @param response response to write to
+     * @param file     file to send
+     * @param start    first byte to send
+     * @param length   amount of bytes to send or -1 to send the rest of the file
+     *
+     * @throws IOException when the file could not be read or the client closed the connection
+     */
+    static void send(HttpServletResponse response, Path file, long start, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = length < 0 ? channel.size() - start : length;
+            response.setContentLengthLong(size);
+            ServletOutputStream output = response.getOutputStream();
+            if (output instanceof HttpOutput && size <= Integer.MAX_VALUE && reserveMapping()) {
+                MappedByteBuffer buffer;
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                } catch (IOException e) {
+                    MAPPINGS.decrementAndGet();
+                    throw e;
+                }
+                CLEANER.register(buffer, MAPPINGS::decrementAndGet);
+                // blocking send which completes the response.
+                ((HttpOutput) output).sendContent(buffer);
+                return;
+            }
+            transfer(channel, start, size, output);
+        }
+    }
+
+    /**
+     * Write a section of a file to an output stream without mapping it.
+     *
+     * @param channel channel of the file
+     * @param start   first byte to send
+     * @param size    amount of bytes to send
+     * @param output  output to write to. The output is closed.
+     *
+     * @throws IOException when the file could not be read or the client closed the connection
+     */
+    static void transfer(FileChannel channel, long start, long size, ServletOutputStream output) throws IOException {
+        try (output) {
+            long position = 0;
+            var target = Channels.newChannel(output);
+            while (position < size) {
+                position += channel.transferTo(start + position, size - position, target);
+            }
+        }
+    }
+
+    private static boolean reserveMapping() {
+        if (MAPPINGS.incrementAndGet() <= MAX_MAPPINGS) return true;
+        MAPPINGS.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Write a section of a cached file to the response. Sets the content length of the response.
+     *
+     * @param response response to write to
+     * @param content  content of the file. The position and limit of the buffer are changed.
+     * @param start    first byte to send
+     * @param length   amount of bytes to send or -1 to send the rest of the file
+     *
+     * @throws IOException when the client closed the connection
+     */
+    static void send(HttpServletResponse response, ByteBuffer content, long start, long length) throws IOException {
+        content.position((int) start);
+        if (length >= 0) content.limit((int) (start + length));
+        response.setContentLengthLong(content.remaining());
+        ServletOutputStream output = response.getOutputStream();
+        if (output instanceof HttpOutput) {
+            ((HttpOutput) output).sendContent(content);
+            return;
+        }
+        try (output) {
+            var target = Channels.newChannel(output);
+            while (content.hasRemaining()) target.write(content);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.eldoria.updatebutler.api.updates;
+
+import com.google.gson.Gson;
+import de.eldoria.updatebutler.config.Application;
+import de.eldoria.updatebutler.config.Configuration;
+import de.eldoria.updatebutler.config.Release;
+import de.eldoria.updatebutler.config.Version;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Metrics;
+
+import java.util.Optional;
+
+/**
+ * Resolves update checks against the configuration.
+ */
+class UpdateCheck {
+    private final Configuration configuration;
+    private final CheckResponseCache checkCache;
+    private final Counter outdated = Metrics.registry().counter("updatebutler_update_checks_outdated_total",
+            "Update checks which reported a newer version.");
+
+    UpdateCheck(Configuration configuration, Gson gson) {
+        this.configuration = configuration;
+        this.checkCache = new CheckResponseCache(gson);
+        configuration.onApplicationDeleted(checkCache::remove);
+    }
+
+    /**
+     * Get the release channel of a application.
+     *
+     * @param application application
+     * @param devBuild    true if dev builds are included
+     *
+     * @return channel or null if the channel has no release
+     */
+    CheckResponseCache.Channel channel(Application application, boolean devBuild) {
+        return checkCache.get(application).channel(devBuild);
+    }
+
+    /**
+     * Check if a newer release than the installed version is available.
+     *
+     * @param application application
+     * @param channel     release channel of the client
+     * @param version     installed version or null if unknown
+     *
+     * @return true if a update is available
+     */
+    boolean isUpdate(Application application, CheckResponseCache.Channel channel, String version) {
+        boolean update = resolve(application, channel, version);
+        if (update) outdated.inc();
+        return update;
+    }
+
+    private boolean resolve(Application application, CheckResponseCache.Channel channel, String version) {
+        if (version == null) return true;
+        Optional<Release> installed = application.getReleaseIndex().find(version);
+        if (installed.isPresent()) return channel.isUpdate(installed.get());
+        return channel.isUpdate(Version.parse(version));
+    }
+
+    /**
+     * Resolve a update check.
+     *
+     * @param id       id of the application
+     * @param version  installed version or null if unknown
+     * @param devBuild true if dev builds are included
+     *
+     * @return serialized response
+     */
+    byte[] answer(int id, String version, boolean devBuild) {
+        Optional<Application> application = configuration.getApplicationById(id);
+        if (application.isEmpty()) return checkCache.unknown();
+        CheckResponseCache.Channel channel = channel(application.get(), devBuild);
+        if (channel == null) return checkCache.unknown();
+        return channel.answer(isUpdate(application.get(), channel, version));
+    }
+
+    /**
+     * Get the response for a unknown application or release.
+     *
+     * @return serialized empty response
+     */
+    byte[] unknown() {
+        return checkCache.unknown();
+    }
+}
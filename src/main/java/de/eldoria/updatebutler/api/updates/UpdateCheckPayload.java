@@ -1,10 +1,13 @@
 package de.eldoria.updatebutler.api.updates;
 
+import com.google.gson.annotations.SerializedName;
 import lombok.Getter;
 
 @Getter
 public class UpdateCheckPayload {
+    @SerializedName("id")
     private int applicationId;
     private String version;
+    @SerializedName("devbuild")
     private boolean allowDevBuilds;
 }
@@ -1,39 +1,85 @@
 package de.eldoria.updatebutler.api.updates;
 
 import com.google.api.client.http.HttpStatusCodes;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import de.eldoria.updatebutler.api.ClientAddressResolver;
+import de.eldoria.updatebutler.api.ETags;
 import de.eldoria.updatebutler.api.RateLimiter;
+import de.eldoria.updatebutler.artifacts.ArtifactCache;
+import de.eldoria.updatebutler.artifacts.ArtifactStore;
 import de.eldoria.updatebutler.config.Application;
 import de.eldoria.updatebutler.config.Configuration;
+import de.eldoria.updatebutler.config.RateLimitSettings;
 import de.eldoria.updatebutler.config.Release;
-import de.eldoria.updatebutler.config.ReleaseBuilder;
+import de.eldoria.updatebutler.config.ReleaseVariant;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
 import de.eldoria.updatebutler.util.C;
+import de.eldoria.updatebutler.webhook.WebhookJob;
+import de.eldoria.updatebutler.webhook.WebhookQueue;
 import lombok.extern.slf4j.Slf4j;
 import spark.Request;
 import spark.Response;
 
-import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.temporal.ChronoUnit;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.Optional;
 
+import static de.eldoria.updatebutler.api.TimedRoute.timed;
 import static spark.Spark.get;
+import static spark.Spark.head;
 import static spark.Spark.post;
 
 @Slf4j
 public class UpdatesAPI {
     private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int STATUS_ACCEPTED = 202;
+    private static final int STATUS_PARTIAL_CONTENT = 206;
+    private static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
     private final Configuration configuration;
-    private final RateLimiter downloadLimiter = new RateLimiter(5, ChronoUnit.SECONDS);
-
-    public UpdatesAPI(Configuration configuration) {
+    private final WebhookQueue webhookQueue;
+    private final UpdateCheck updateCheck;
+    private final RateLimiter checkLimiter;
+    private final RateLimiter batchLimiter;
+    private final RateLimiter downloadLimiter;
+    private final Counter checks;
+    private final Counter batchChecks;
+    private final Counter downloads;
+    private final Counter downloadBytes;
+    private final Counter deltaDownloads;
+    private final Counter webhooks;
+
+    public UpdatesAPI(Configuration configuration, WebhookQueue webhookQueue, ClientAddressResolver resolver) {
         this.configuration = configuration;
-
-
-        get("/check", (((request, response) -> {
+        this.webhookQueue = webhookQueue;
+        this.updateCheck = new UpdateCheck(configuration, GSON);
+        RateLimitSettings rateLimits = configuration.getRateLimits();
+        this.checkLimiter = new RateLimiter("check", rateLimits.getCheck(), rateLimits.getMaxClients(), resolver);
+        this.batchLimiter = new RateLimiter("check_batch", rateLimits.getCheckBatch(), rateLimits.getMaxClients(), resolver);
+        this.downloadLimiter = new RateLimiter("download", rateLimits.getDownload(), rateLimits.getMaxClients(), resolver);
+        MetricsRegistry metrics = Metrics.registry();
+        this.checks = metrics.counter("updatebutler_update_checks_total", "Answered update checks.", "mode", "single");
+        this.batchChecks = metrics.counter("updatebutler_update_checks_total", "Answered update checks.", "mode", "batch");
+        this.downloads = metrics.counter("updatebutler_downloads_total", "Delivered release files.");
+        this.downloadBytes = metrics.counter("updatebutler_download_bytes_total", "Bytes of delivered release files.");
+        this.deltaDownloads = metrics.counter("updatebutler_delta_downloads_total", "Delivered release deltas.");
+        this.webhooks = metrics.counter("updatebutler_webhooks_total", "Received github webhooks.");
+
+        get("/check", timed(duration(metrics, "check"), ((request, response) -> {
+            checkLimiter.assertRateLimit(request, response);
             int id;
             try {
                 id = Integer.parseInt(request.queryParams("id"));
@@ -47,58 +93,97 @@ public class UpdatesAPI {
             Optional<Application> application = configuration.getApplicationById(id);
 
             if (application.isEmpty()) {
-                response.body(GSON.toJson(new UpdateCheckResponse(false, null, null)));
+                response.type("application/json");
                 response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
-                return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
+                return updateCheck.unknown();
             }
 
-            Optional<Release> optionalRelease = application.get().getRelease(version);
+            CheckResponseCache.Channel channel = updateCheck.channel(application.get(), devBuild);
 
+            if (channel == null) {
+                response.status(HttpStatusCodes.STATUS_CODE_NOT_FOUND);
+                return HttpStatusCodes.STATUS_CODE_NOT_FOUND + " This release does not exist";
+            }
 
-            Optional<Release> latestRelease;
+            boolean update = updateCheck.isUpdate(application.get(), channel, version);
+            checks.inc();
 
-            if (devBuild) {
-                latestRelease = application.get().getLatestVersion();
-            } else {
-                latestRelease = application.get().getLatestStableVersion();
+            if (ETags.notModified(request, response, channel.etag(update))) {
+                return "";
             }
 
-            if (latestRelease.isEmpty()) {
-                response.status(HttpStatusCodes.STATUS_CODE_NOT_FOUND);
-                return HttpStatusCodes.STATUS_CODE_NOT_FOUND + " This release does not exist";
-            }
+            response.type("application/json");
+            response.status(HttpStatusCodes.STATUS_CODE_OK);
+            return channel.answer(update);
+        })));
 
-            Release release = latestRelease.get();
+        post("/check/batch", timed(duration(metrics, "check_batch"), (request, response) -> {
+            batchLimiter.assertRateLimit(request, response);
+            UpdateCheckPayload[] payloads;
+            try {
+                payloads = GSON.fromJson(request.body(), UpdateCheckPayload[].class);
+            } catch (JsonSyntaxException e) {
+                response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+                return "Invalid payload";
+            }
 
-            if (optionalRelease.isEmpty()) {
-                response.status(HttpStatusCodes.STATUS_CODE_OK);
-                return GSON.toJson(new UpdateCheckResponse(true, release.getVersion(), release.getChecksum()));
+            if (payloads == null || payloads.length > MAX_BATCH_SIZE) {
+                response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+                return "Provide between 0 and " + MAX_BATCH_SIZE + " checks";
             }
 
-            if (release.getPublished().isAfter(optionalRelease.get().getPublished())) {
-                return GSON.toJson(new UpdateCheckResponse(true, release.getVersion(), release.getChecksum()));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write('[');
+            for (int i = 0; i < payloads.length; i++) {
+                if (i != 0) out.write(',');
+                out.writeBytes(batchAnswer(payloads[i]));
             }
+            out.write(']');
 
-            return GSON.toJson(new UpdateCheckResponse(false, release.getVersion(), release.getChecksum()));
-        })));
+            response.type("application/json");
+            response.status(HttpStatusCodes.STATUS_CODE_OK);
+            return out.toByteArray();
+        }));
 
         post("/download", ((request, response) -> {
             response.status(HttpStatusCodes.STATUS_CODE_OK);
             return "<a href=\"" + configuration.getHostName() + "/download?" + request.queryString() + "\">Click here to download.</a>";
         }));
 
-        get("/download", ((request, response) -> {
-            downloadLimiter.assertRateLimit(request);
+        get("/download", timed(duration(metrics, "download"), (request, response) -> {
+            downloadLimiter.assertRateLimit(request, response);
             try {
                 return getOutputFileStream(request, response, Integer.parseInt(request.queryParams("id")),
-                        request.queryParams("version"));
+                        request.queryParams("version"), false);
+            } catch (NumberFormatException e) {
+                response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+                return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
+            }
+        }));
+
+        get("/download/delta", timed(duration(metrics, "download_delta"), (request, response) -> {
+            downloadLimiter.assertRateLimit(request, response);
+            try {
+                return getDelta(request, response, Integer.parseInt(request.queryParams("id")),
+                        request.queryParams("from"), request.queryParams("to"));
             } catch (NumberFormatException e) {
                 response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
                 return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
             }
         }));
 
-        post("/webhook/:hash/github", ((request, response) -> {
+        head("/download", ((request, response) -> {
+            try {
+                return getOutputFileStream(request, response, Integer.parseInt(request.queryParams("id")),
+                        request.queryParams("version"), true);
+            } catch (NumberFormatException e) {
+                response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+                return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
+            }
+        }));
+
+        post("/webhook/:hash/github", timed(duration(metrics, "webhook"), (request, response) -> {
+            webhooks.inc();
             String webhook = request.params(":hash");
 
             Optional<Application> applicationByWebhook = configuration.getApplicationByWebhook(webhook);
@@ -107,11 +192,19 @@ public class UpdatesAPI {
                 return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
             }
 
-            response.status(HttpStatusCodes.STATUS_CODE_OK);
-
             Application application = applicationByWebhook.get();
 
-            GithubReleasePayload payload = GSON.fromJson(request.body(), GithubReleasePayload.class);
+            GithubReleasePayload payload;
+            try {
+                payload = GSON.fromJson(request.body(), GithubReleasePayload.class);
+            } catch (JsonSyntaxException e) {
+                response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+                return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
+            }
+            if (payload == null || payload.getRelease() == null) {
+                response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+                return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
+            }
 
             if (!C.isInArray(payload.getAction(), "released", "prereleased")) {
                 response.status(HttpStatusCodes.STATUS_CODE_OK);
@@ -122,23 +215,51 @@ public class UpdatesAPI {
 
             var split = gitRelease.getTag().split("\\\\");
             String version = split[split.length - 1];
-            if (gitRelease.getAssets().isEmpty()) {
+            if (gitRelease.getAssets() == null || gitRelease.getAssets().isEmpty()) {
+                response.status(HttpStatusCodes.STATUS_CODE_OK);
                 return HttpStatusCodes.STATUS_CODE_OK;
             }
 
-            Optional<Release> buildRelease = ReleaseBuilder.buildRelease(application, version, gitRelease.getName(), gitRelease.getBody(), gitRelease.getAssets().get(0).getUrl(), gitRelease.isPrerelease());
-            if (buildRelease.isEmpty()) {
-                return HttpStatusCodes.STATUS_CODE_OK;
+            String delivery = request.headers("X-GitHub-Delivery");
+            if (delivery == null) {
+                delivery = Hashing.sha256().hashString(request.body(), StandardCharsets.UTF_8).toString();
+            }
+            WebhookJob job = new WebhookJob(delivery, application.getId(), version, gitRelease.getName(),
+                    gitRelease.getBody(), gitRelease.getAssets().get(0).getUrl(), gitRelease.isPrerelease());
+
+            // the release is built in the background. Github cancels webhooks which take longer than 10 seconds.
+            switch (webhookQueue.submit(job)) {
+                case ACCEPTED:
+                    response.status(STATUS_ACCEPTED);
+                    return STATUS_ACCEPTED;
+                case DUPLICATE:
+                    response.status(HttpStatusCodes.STATUS_CODE_OK);
+                    return HttpStatusCodes.STATUS_CODE_OK;
+                case RELEASE_EXISTS:
+                    response.status(HttpStatusCodes.STATUS_CODE_CONFLICT);
+                    return "Release " + version + " exists already. Delete it to publish it again.";
+                case FULL:
+                    response.status(HttpStatusCodes.STATUS_CODE_SERVICE_UNAVAILABLE);
+                    return HttpStatusCodes.STATUS_CODE_SERVICE_UNAVAILABLE;
+                default:
+                    response.status(HttpStatusCodes.STATUS_CODE_SERVER_ERROR);
+                    return HttpStatusCodes.STATUS_CODE_SERVER_ERROR;
             }
+        }));
+    }
 
-            configuration.addRelease(application, buildRelease.get());
+    private byte[] batchAnswer(UpdateCheckPayload payload) {
+        if (payload == null) return updateCheck.unknown();
+        batchChecks.inc();
+        return updateCheck.answer(payload.getApplicationId(), payload.getVersion(), payload.isAllowDevBuilds());
+    }
 
-            response.status(HttpStatusCodes.STATUS_CODE_OK);
-            return HttpStatusCodes.STATUS_CODE_OK;
-        }));
+    private static Histogram duration(MetricsRegistry metrics, String route) {
+        return metrics.histogram("updatebutler_route_duration_seconds", "Time spent in a route handler.",
+                "route", route);
     }
 
-    private Object getOutputFileStream(Request request, Response response, int id, String version) {
+    private Object getOutputFileStream(Request request, Response response, int id, String version, boolean head) {
         Optional<Application> application = configuration.getApplicationById(id);
 
         if (application.isEmpty()) {
@@ -147,8 +268,8 @@ public class UpdatesAPI {
             return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
         }
 
-        Optional<Release> optionalRelease = application.get()
-                .getRelease(request.queryParams("version").replace("_", " "));
+        Optional<Release> optionalRelease = version == null ? Optional.empty()
+                : application.get().getRelease(version.replace("_", " "));
 
         if (optionalRelease.isEmpty()) {
             response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
@@ -156,21 +277,141 @@ public class UpdatesAPI {
             return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
         }
 
-        File file = new File(optionalRelease.get().getFile());
+        Release release = optionalRelease.get();
+        File file = new File(release.getFile());
         if (!file.exists()) {
             response.status(HttpStatusCodes.STATUS_CODE_SERVER_ERROR);
             response.body("File not found.");
             return HttpStatusCodes.STATUS_CODE_SERVER_ERROR;
         }
 
-        response.header("Content-Disposition", "attachment; filename=\"" + file.getName() + "\"");
+        // the compressed variant is only sent as a whole. Ranges always refer to the file itself.
+        ArtifactStore store = configuration.getArtifactStore();
+        ReleaseVariant gzip = release.getGzip();
+        boolean compressed = gzip != null && store != null && request.headers("Range") == null
+                && AcceptEncoding.accepts(request.headers("Accept-Encoding"), "gzip")
+                && Files.exists(store.path(gzip.getChecksum()));
+        String checksum = compressed ? gzip.getChecksum() : release.getChecksum();
+        Path path = compressed ? store.path(checksum) : file.toPath();
+        // releases created before checksums were recorded have no entity tag
+        String etag = release.getChecksum() == null ? null
+                : compressed ? ETags.of(release.getChecksum(), "gzip") : ETags.of(release.getChecksum());
+        response.header("Accept-Ranges", "bytes");
+        if (release.getChecksum() != null) {
+            response.header("X-Checksum-Sha256", release.getChecksum());
+        }
+        if (gzip != null) {
+            response.header("Vary", "Accept-Encoding");
+        }
+
+        Instant published = release.getPublished().atZone(ZoneId.systemDefault()).toInstant();
+        if (ETags.notModified(request, response, etag, published)) {
+            return "";
+        }
+
+        response.header("Content-Disposition", "attachment; filename=\"" + release.getFileName() + "\"");
+        response.header("X-Content-Type-Options", "nosniff");
+        response.type("application/octet-stream");
+        if (compressed) {
+            response.header("Content-Encoding", "gzip");
+        }
+
+        long size = compressed ? gzip.getSize() : file.length();
+
+        if (head) {
+            response.raw().setContentLengthLong(size);
+            response.status(HttpStatusCodes.STATUS_CODE_OK);
+            return "";
+        }
+
+        ByteRange range = ByteRange.parse(request.headers("Range"), size);
+        String ifRange = request.headers("If-Range");
+        if (range != null && ifRange != null && (etag == null || !ifRange.trim().equals(etag))) {
+            // the client holds a different representation and needs the full file.
+            range = null;
+        }
+
+        if (range != null && !range.isSatisfiable()) {
+            response.header("Content-Range", range.contentRange(size));
+            response.status(STATUS_RANGE_NOT_SATISFIABLE);
+            return "";
+        }
+
+        try {
+            if (range == null) {
+                response.status(HttpStatusCodes.STATUS_CODE_OK);
+                send(response, checksum, path, 0, -1);
+                downloadBytes.add(size);
+            } else {
+                response.status(STATUS_PARTIAL_CONTENT);
+                response.header("Content-Range", range.contentRange(size));
+                send(response, checksum, path, range.start(), range.length());
+                downloadBytes.add(range.length());
+            }
+        } catch (IOException e) {
+            log.error("An error occured while writing the output stream.", e);
+            response.status(HttpStatusCodes.STATUS_CODE_SERVER_ERROR);
+            response.body("File not found.");
+            return HttpStatusCodes.STATUS_CODE_SERVER_ERROR;
+        }
+
+        // resumed downloads are only counted once. Counts are persisted by the download counter flush.
+        if (range == null || range.start() == 0) {
+            release.downloaded();
+            downloads.inc();
+        }
+        log.debug("Delivered release {}", release.getVersion());
+
+        return response.raw();
+    }
+
+    private Object getDelta(Request request, Response response, int id, String from, String to) {
+        Optional<Application> application = configuration.getApplicationById(id);
+
+        if (application.isEmpty()) {
+            response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+            response.body("Application not found.");
+            return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
+        }
+
+        Optional<Release> source = from == null ? Optional.empty()
+                : application.get().getRelease(from.replace("_", " "));
+        Optional<Release> target = to == null ? Optional.empty()
+                : application.get().getRelease(to.replace("_", " "));
+
+        if (source.isEmpty() || target.isEmpty()) {
+            response.status(HttpStatusCodes.STATUS_CODE_BAD_REQUEST);
+            response.body("Invalid release");
+            return HttpStatusCodes.STATUS_CODE_BAD_REQUEST;
+        }
+
+        Release release = target.get();
+        ArtifactStore store = configuration.getArtifactStore();
+        Optional<ReleaseVariant> delta = release.getDelta(source.get().getVersion());
+        if (delta.isEmpty() || store == null || !Files.exists(store.path(delta.get().getChecksum()))) {
+            // the updater falls back to the full download
+            response.status(HttpStatusCodes.STATUS_CODE_NOT_FOUND);
+            return "No delta available.";
+        }
+
+        String checksum = delta.get().getChecksum();
+        response.header("X-Checksum-Sha256", release.getChecksum());
+        if (source.get().getChecksum() != null) {
+            response.header("X-Delta-Source-Sha256", source.get().getChecksum());
+        }
+
+        if (ETags.notModified(request, response, ETags.of(checksum))) {
+            return "";
+        }
+
+        response.header("Content-Disposition", "attachment; filename=\"" + release.getFileName() + ".delta\"");
         response.header("X-Content-Type-Options", "nosniff");
         response.type("application/octet-stream");
 
-        HttpServletResponse raw = response.raw();
-        try (var output = raw.getOutputStream()) {
-            Files.copy(file.toPath(), output);
-            // output.flush();
+        try {
+            response.status(HttpStatusCodes.STATUS_CODE_OK);
+            send(response, checksum, store.path(checksum), 0, -1);
+            downloadBytes.add(delta.get().getSize());
         } catch (IOException e) {
             log.error("An error occured while writing the output stream.", e);
             response.status(HttpStatusCodes.STATUS_CODE_SERVER_ERROR);
@@ -178,11 +419,24 @@ public class UpdatesAPI {
             return HttpStatusCodes.STATUS_CODE_SERVER_ERROR;
         }
 
-        optionalRelease.get().downloaded();
-        configuration.save();
-        log.debug("Delivered release {}", optionalRelease.get().getVersion());
-        response.status(HttpStatusCodes.STATUS_CODE_OK);
+        release.downloaded();
+        downloads.inc();
+        deltaDownloads.inc();
+        log.debug("Delivered delta from {} to {}", source.get().getVersion(), release.getVersion());
 
         return response.raw();
     }
+
+    /**
+     * Send a section of a file in the artifact store. Files in the artifact cache are sent from memory.
+     */
+    private void send(Response response, String checksum, Path file, long start, long length) throws IOException {
+        ArtifactCache cache = configuration.getArtifactCache();
+        Optional<ByteBuffer> cached = cache == null ? Optional.empty() : cache.get(checksum, file);
+        if (cached.isPresent()) {
+            FileDelivery.send(response.raw(), cached.get(), start, length);
+        } else {
+            FileDelivery.send(response.raw(), file, start, length);
+        }
+    }
 }
@@ -0,0 +1,262 @@
+package de.eldoria.updatebutler.artifacts;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import de.eldoria.updatebutler.config.ArtifactSettings;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps frequently downloaded release files in direct memory.
+ * <p>
+ * Files are cached by their checksum and never change. When the cache is full, the least frequently downloaded files
+ * are evicted first. A file is only cached if it was requested more often than the files it would evict. Download
+ * frequencies are halved periodically, so files of old releases cool down.
+ * <p>
+ * Files are loaded by a background thread. Requests of a file are served from disk until it is loaded.
+ */
+@Slf4j
+public class ArtifactCache {
+    private static final long DECAY_INTERVAL = TimeUnit.MINUTES.toNanos(10);
+    private static final Comparator<Entry> COLDEST = Comparator.<Entry>comparingLong(entry -> entry.hits.get())
+            .thenComparingLong(entry -> entry.lastAccess);
+    private final long capacity;
+    private final long maxFileSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Requests of files which are not cached since the last decay.
+     */
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastDecay = new AtomicLong(System.nanoTime());
+    private final ExecutorService warmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Artifact cache warmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private long resident;
+
+    /**
+     * Create a new artifact cache.
+     *
+     * @param settings size of the cache and the cached files
+     */
+    public ArtifactCache(ArtifactSettings settings) {
+        // jetty and other nio buffers need direct memory as well
+        capacity = Math.min(settings.getCacheSize(), maxDirectMemory() / 2);
+        if (capacity < settings.getCacheSize()) {
+            log.warn("Artifact cache size of {} bytes exceeds half of the direct memory limit. Using {} bytes.",
+                    settings.getCacheSize(), capacity);
+        }
+        maxFileSize = Math.min(settings.getCacheMaxFileSize(), Integer.MAX_VALUE);
+        MetricsRegistry metrics = Metrics.registry();
+        hits = metrics.counter("updatebutler_artifact_cache_requests_total", "Requests of release files by result.",
+                "result", "hit");
+        misses = metrics.counter("updatebutler_artifact_cache_requests_total", "Requests of release files by result.",
+                "result", "miss");
+        evictions = metrics.counter("updatebutler_artifact_cache_evictions_total",
+                "Release files evicted from the cache.");
+        metrics.gauge("updatebutler_artifact_cache_hit_ratio", "Share of release file requests served from the cache.",
+                this::hitRatio);
+        metrics.gauge("updatebutler_artifact_cache_bytes", "Bytes of release files in the cache.", this::getResident);
+        metrics.gauge("updatebutler_artifact_cache_files", "Release files in the cache.", entries::size);
+    }
+
+    /**
+     * Get the content of a release file. Files which are not cached yet are loaded in the background if they are
+     * requested more often than the files they would evict.
+     *
+     * @param checksum checksum of the file
+     * @param file     path of the file
+     *
+     * @return read only content of the file or an empty optional if the file should be read from disk
+     */
+    public Optional<ByteBuffer> get(String checksum, Path file) {
+        if (capacity <= 0 || checksum == null) return Optional.empty();
+        decay();
+        Entry entry = entries.get(checksum);
+        if (entry != null) {
+            entry.hits.incrementAndGet();
+            entry.lastAccess = System.nanoTime();
+            hits.inc();
+            return Optional.of(entry.content.duplicate());
+        }
+        misses.inc();
+        long frequency = requests.computeIfAbsent(checksum, key -> new AtomicLong()).incrementAndGet();
+        schedule(checksum, file, frequency);
+        return Optional.empty();
+    }
+
+    /**
+     * Load the file of a new release in the background. The file is expected to be as popular as an average cached
+     * file, so it only evicts files which are downloaded less.
+     *
+     * @param checksum checksum of the file
+     * @param file     path of the file
+     */
+    public void warm(String checksum, Path file) {
+        if (capacity <= 0 || checksum == null) return;
+        schedule(checksum, file, average());
+    }
+
+    /**
+     * Get the bytes of all cached files.
+     *
+     * @return cached bytes
+     */
+    public synchronized long getResident() {
+        return resident;
+    }
+
+    private void schedule(String checksum, Path file, long frequency) {
+        // a file is loaded once, even if it is requested again while it is loading
+        if (entries.containsKey(checksum) || !loading.add(checksum)) return;
+        warmer.execute(() -> {
+            try {
+                load(checksum, file, frequency);
+            } finally {
+                loading.remove(checksum);
+            }
+        });
+    }
+
+    private void load(String checksum, Path file, long frequency) {
+        try {
+            long size = Files.size(file);
+            if (size > maxFileSize || !reserve(size, frequency)) return;
+            Entry entry;
+            try {
+                entry = new Entry(read(file, (int) size), frequency);
+            } catch (IOException e) {
+                free(size);
+                throw e;
+            }
+            entries.put(checksum, entry);
+            requests.remove(checksum);
+            log.debug("Cached release file {} with {} bytes.", file, size);
+        } catch (IOException e) {
+            log.warn("Could not cache release file {}", file, e);
+        }
+    }
+
+    /**
+     * Reserve space for a file. Files which were requested less often than the new file are evicted if the cache is
+     * full.
+     *
+     * @param size      size of the new file
+     * @param frequency requests of the new file
+     *
+     * @return true if the space was reserved
+     */
+    private synchronized boolean reserve(long size, long frequency) {
+        if (size > capacity) return false;
+        long free = capacity - resident;
+        if (free < size) {
+            List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Map.Entry.comparingByValue(COLDEST));
+            List<Map.Entry<String, Entry>> victims = new ArrayList<>();
+            for (Map.Entry<String, Entry> candidate : candidates) {
+                if (free >= size || candidate.getValue().hits.get() >= frequency) break;
+                victims.add(candidate);
+                free += candidate.getValue().size;
+            }
+            if (free < size) return false;
+            for (Map.Entry<String, Entry> victim : victims) {
+                // buffers in use by running downloads are released by the garbage collector
+                if (entries.remove(victim.getKey(), victim.getValue())) {
+                    resident -= victim.getValue().size;
+                    evictions.inc();
+                }
+            }
+        }
+        resident += size;
+        return true;
+    }
+
+    private synchronized void free(long size) {
+        resident -= size;
+    }
+
+    private long average() {
+        double average = entries.values().stream().mapToLong(entry -> entry.hits.get()).average().orElse(1);
+        return Math.max(1, Math.round(average));
+    }
+
+    private void decay() {
+        long now = System.nanoTime();
+        long last = lastDecay.get();
+        if (now - last < DECAY_INTERVAL || !lastDecay.compareAndSet(last, now)) return;
+        for (Entry entry : entries.values()) {
+            entry.hits.updateAndGet(value -> value / 2);
+        }
+        requests.clear();
+    }
+
+    /**
+     * Get the limit of direct memory. Without -XX:MaxDirectMemorySize the limit is the maximum heap size.
+     */
+    private static long maxDirectMemory() {
+        HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        if (diagnostics != null) {
+            long limit = Long.parseLong(diagnostics.getVMOption("MaxDirectMemorySize").getValue());
+            if (limit > 0) return limit;
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    private double hitRatio() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0 : hit / (double) total;
+    }
+
+    private static ByteBuffer read(Path file, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("File " + file + " is shorter than " + size + " bytes.");
+                }
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static final class Entry {
+        private final ByteBuffer content;
+        private final long size;
+        private final AtomicLong hits;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(ByteBuffer content, long hits) {
+            this.content = content;
+            this.size = content.remaining();
+            this.hits = new AtomicLong(hits);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package de.eldoria.updatebutler.artifacts;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
+import de.eldoria.updatebutler.util.FileHelper;
+import de.eldoria.updatebutler.util.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Content addressed store of release files.
+ * <p>
+ * Every file is stored once under its sha256 hash, no matter how many releases use it. Files which are no longer used
+ * by any release are deleted by {@link #collect(Set, Instant)}.
+ */
+@Slf4j
+public class ArtifactStore {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern CHECKSUM = Pattern.compile("[0-9a-f]{64}");
+    private final Path directory;
+    private final Path incoming;
+    private final Counter stored;
+    private final Counter deduplicated;
+    private final Counter collected;
+    private volatile long artifacts;
+    private volatile long bytes;
+
+    /**
+     * Create a new artifact store.
+     *
+     * @param directory directory of the store
+     */
+    public ArtifactStore(Path directory) {
+        this.directory = directory;
+        this.incoming = directory.resolve("incoming");
+        MetricsRegistry metrics = Metrics.registry();
+        stored = metrics.counter("updatebutler_artifacts_stored_total", "Release files added to the store.");
+        deduplicated = metrics.counter("updatebutler_artifacts_deduplicated_total",
+                "Release files which were already in the store.");
+        collected = metrics.counter("updatebutler_artifacts_collected_total", "Unused release files which were deleted.");
+        metrics.gauge("updatebutler_artifacts", "Release files in the store at the last collection.", () -> artifacts);
+        metrics.gauge("updatebutler_artifacts_bytes", "Size of the store at the last collection.", () -> bytes);
+    }
+
+    /**
+     * Download a file into the store.
+     *
+     * @param url     url of the file
+     * @param maxSize maximum size of the file in bytes
+     *
+     * @return sha256 checksum of the file
+     *
+     * @throws IOException when the file could not be downloaded or stored
+     */
+    public String download(String url, long maxSize) throws IOException {
+        Files.createDirectories(incoming);
+        Path part = incoming.resolve(UUID.randomUUID() + ".part");
+        try {
+            String checksum = FileHelper.download(url, part, maxSize);
+            add(part, checksum);
+            return checksum;
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /**
+     * Write a file which is derived from other release files into the store.
+     *
+     * @param writer writes the content of the file. The stream must not be closed by the writer.
+     *
+     * @return sha256 checksum of the file
+     *
+     * @throws IOException when the file could not be written or stored
+     */
+    public String write(Writer writer) throws IOException {
+        Files.createDirectories(incoming);
+        Path part = incoming.resolve(UUID.randomUUID() + ".part");
+        try {
+            String checksum;
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 HashingOutputStream out = new HashingOutputStream(Hashing.sha256(),
+                         new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE))) {
+                writer.write(out);
+                out.flush();
+                channel.force(true);
+                checksum = out.hash().toString();
+            }
+            add(part, checksum);
+            return checksum;
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /**
+     * Get the path of a file in the store.
+     *
+     * @param checksum sha256 checksum of the file
+     *
+     * @return path of the file. The file might not exist.
+     */
+    public Path path(String checksum) {
+        return directory.resolve(checksum.substring(0, 2)).resolve(checksum);
+    }
+
+    private synchronized void add(Path file, String checksum) throws IOException {
+        Path target = path(checksum);
+        if (Files.exists(target)) {
+            // renews the grace period, the file is about to be used by a new release
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            deduplicated.inc();
+            log.debug("Release file {} is already stored.", checksum);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file, target);
+        }
+        FileUtil.syncDirectory(target.getParent());
+        stored.inc();
+    }
+
+    /**
+     * Delete all files which are not referenced and older than the cutoff. Incomplete downloads older than the cutoff
+     * are deleted as well.
+     *
+     * @param referenced checksums of all files which are used by releases
+     * @param cutoff     files modified after this instant are kept
+     *
+     * @return amount of deleted files
+     *
+     * @throws IOException when the store could not be read
+     */
+    public int collect(Set<String> referenced, Instant cutoff) throws IOException {
+        if (!Files.isDirectory(directory)) return 0;
+        int deleted = 0;
+        long count = 0;
+        long size = 0;
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path prefix : prefixes) {
+                boolean parts = prefix.equals(incoming);
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(prefix)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        if (!parts && !CHECKSUM.matcher(name).matches()) continue;
+                        if ((parts || !referenced.contains(name)) && delete(file, cutoff)) {
+                            deleted++;
+                            continue;
+                        }
+                        if (parts) continue;
+                        count++;
+                        size += Files.size(file);
+                    }
+                }
+            }
+        }
+        artifacts = count;
+        bytes = size;
+        return deleted;
+    }
+
+    private synchronized boolean delete(Path file, Instant cutoff) throws IOException {
+        if (Files.getLastModifiedTime(file).toInstant().isAfter(cutoff)) return false;
+        Files.deleteIfExists(file);
+        collected.inc();
+        log.debug("Deleted unused release file {}", file);
+        return true;
+    }
+
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+}
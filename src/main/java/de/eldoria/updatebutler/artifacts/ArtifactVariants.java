@@ -0,0 +1,114 @@
+package de.eldoria.updatebutler.artifacts;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import de.eldoria.updatebutler.config.ArtifactSettings;
+import de.eldoria.updatebutler.config.Release;
+import de.eldoria.updatebutler.config.ReleaseVariant;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the precompressed variants and deltas of release files when a release is created.
+ * <p>
+ * Variants are optional. A variant which could not be built or is not notably smaller than the release file is not
+ * created and the release file is served instead.
+ */
+@Slf4j
+public final class ArtifactVariants {
+    private ArtifactVariants() {
+    }
+
+    /**
+     * Build the gzip compressed variant of a release file.
+     *
+     * @param store    store of the release file
+     * @param checksum checksum of the release file
+     * @param settings settings of the release files
+     *
+     * @return variant if it is smaller than {@link ArtifactSettings#getVariantMaxRatio()} of the file
+     */
+    public static Optional<ReleaseVariant> gzip(ArtifactStore store, String checksum, ArtifactSettings settings) {
+        Path file = store.path(checksum);
+        try {
+            long size = Files.size(file);
+            String compressed = store.write(out -> {
+                // the compressed file is built once and served many times
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024) {
+                    {
+                        def.setLevel(Deflater.BEST_COMPRESSION);
+                    }
+                };
+                try (InputStream in = Files.newInputStream(file)) {
+                    in.transferTo(gzip);
+                }
+                gzip.finish();
+            });
+            long compressedSize = Files.size(store.path(compressed));
+            if (compressedSize > size * settings.getVariantMaxRatio()) {
+                // the unused file is deleted by the next collection
+                log.debug("Compressed release file {} has {} of {} bytes.", checksum, compressedSize, size);
+                return Optional.empty();
+            }
+            return Optional.of(new ReleaseVariant(compressed, compressedSize));
+        } catch (IOException e) {
+            log.warn("Could not compress release file {}", checksum, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Build the delta from the file of one release to the file of another release.
+     *
+     * @param store    store to write the delta to
+     * @param source   release the delta starts from
+     * @param target   release the delta produces
+     * @param settings settings of the release files
+     *
+     * @return delta if both files are smaller than {@link ArtifactSettings#getDeltaMaxSize()} and the delta is
+     * smaller than {@link ArtifactSettings#getVariantMaxRatio()} of the target file
+     */
+    public static Optional<ReleaseVariant> delta(ArtifactStore store, Release source, Release target,
+                                                 ArtifactSettings settings) {
+        // releases created before the artifact store keep their file at its old location
+        Path sourceFile = Paths.get(source.getFile());
+        Path targetFile = Paths.get(target.getFile());
+        try {
+            long max = Math.min(settings.getDeltaMaxSize(), Integer.MAX_VALUE);
+            if (Files.size(sourceFile) > max || Files.size(targetFile) > max) return Optional.empty();
+            byte[] sourceBytes = Files.readAllBytes(sourceFile);
+            byte[] targetBytes = Files.readAllBytes(targetFile);
+            ByteArrayOutputStream delta = new ByteArrayOutputStream();
+            Delta.create(sourceBytes, targetBytes, delta);
+            if (delta.size() > targetBytes.length * settings.getVariantMaxRatio()) {
+                log.debug("Delta from {} to {} has {} of {} bytes.", source.getVersion(), target.getVersion(),
+                        delta.size(), targetBytes.length);
+                return Optional.empty();
+            }
+            // a broken delta would be applied by every updater
+            HashingOutputStream patched = new HashingOutputStream(Hashing.sha256(), ByteStreams.nullOutputStream());
+            Delta.apply(sourceBytes, new ByteArrayInputStream(delta.toByteArray()), patched);
+            if (!patched.hash().toString().equals(target.getChecksum())) {
+                log.error("Delta from {} to {} does not produce the target file.", source.getVersion(),
+                        target.getVersion());
+                return Optional.empty();
+            }
+            String checksum = store.write(delta::writeTo);
+            return Optional.of(new ReleaseVariant(checksum, delta.size()));
+        } catch (IOException e) {
+            log.warn("Could not build the delta from {} to {}", source.getVersion(), target.getVersion(), e);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package de.eldoria.updatebutler.artifacts;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary delta between two release files.
+ * <p>
+ * The target file is described by copies of sections of the source file and literal bytes. Unchanged entries of a jar
+ * keep their compressed bytes, so only changed entries are transferred as literals.
+ * <p>
+ * Format, all numbers big endian:
+ * <pre>
+ * "UBDELTA1"            magic, 8 ascii bytes
+ * long  target size
+ * byte  1, long source offset, int length   copy a section of the source
+ * byte  2, int length, bytes                insert literal bytes
+ * byte  0                                   end of the delta
+ * </pre>
+ * The delta does not contain checksums. Clients verify the patched file with the checksum of the target release.
+ */
+public final class Delta {
+    private static final byte[] MAGIC = "UBDELTA1".getBytes(StandardCharsets.US_ASCII);
+    private static final int END = 0;
+    private static final int COPY = 1;
+    private static final int INSERT = 2;
+    private static final int BLOCK = 1024;
+    private static final int MOD = 1 << 16;
+    /**
+     * Blocks indexed per weak hash. Bounds the verification effort of files with many equal blocks.
+     */
+    private static final int MAX_CANDIDATES = 8;
+
+    private Delta() {
+    }
+
+    /**
+     * Create the delta from a source to a target file.
+     * <p>
+     * The source is split into blocks which are indexed by a rolling checksum. A window is moved over the target and
+     * matching blocks are extended as long as the files are equal.
+     *
+     * @param source content of the source file
+     * @param target content of the target file
+     * @param out    stream to write the delta to
+     *
+     * @throws IOException when the delta could not be written
+     */
+    public static void create(byte[] source, byte[] target, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeLong(target.length);
+        BlockIndex blocks = index(source);
+        int literal = 0;
+        int position = 0;
+        int weak = target.length >= BLOCK ? checksum(target, 0) : 0;
+        while (position + BLOCK <= target.length) {
+            int match = blocks.isEmpty() ? -1 : find(blocks.get(weak), source, target, position);
+            if (match >= 0) {
+                int length = BLOCK;
+                while (position + length < target.length && match + length < source.length
+                        && source[match + length] == target[position + length]) {
+                    length++;
+                }
+                insert(data, target, literal, position);
+                data.writeByte(COPY);
+                data.writeLong(match);
+                data.writeInt(length);
+                position += length;
+                literal = position;
+                if (position + BLOCK <= target.length) weak = checksum(target, position);
+                continue;
+            }
+            if (position + BLOCK < target.length) weak = roll(weak, target[position], target[position + BLOCK]);
+            position++;
+        }
+        insert(data, target, literal, target.length);
+        data.writeByte(END);
+        data.flush();
+    }
+
+    /**
+     * Apply a delta to a source file.
+     *
+     * @param source content of the source file
+     * @param delta  delta created by {@link #create(byte[], byte[], OutputStream)}
+     * @param out    stream to write the target file to
+     *
+     * @throws IOException when the delta is malformed or could not be read
+     */
+    public static void apply(byte[] source, InputStream delta, OutputStream out) throws IOException {
+        DataInputStream data = new DataInputStream(delta);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a release delta.");
+        long size = data.readLong();
+        long written = 0;
+        byte[] buffer = new byte[64 * 1024];
+        while (true) {
+            int operation = data.readUnsignedByte();
+            if (operation == END) break;
+            if (operation == COPY) {
+                long offset = data.readLong();
+                int length = data.readInt();
+                if (offset < 0 || length < 0 || offset + length > source.length) {
+                    throw new IOException("Copy outside of the source file.");
+                }
+                out.write(source, (int) offset, length);
+                written += length;
+            } else if (operation == INSERT) {
+                int length = data.readInt();
+                if (length < 0) throw new IOException("Negative insert length.");
+                for (int remaining = length; remaining > 0; ) {
+                    int read = Math.min(buffer.length, remaining);
+                    data.readFully(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+                written += length;
+            } else {
+                throw new IOException("Unknown delta operation " + operation);
+            }
+        }
+        if (written != size) throw new IOException("Delta produced " + written + " of " + size + " bytes.");
+    }
+
+    private static BlockIndex index(byte[] source) {
+        BlockIndex blocks = new BlockIndex(source.length / BLOCK);
+        for (int offset = 0; offset + BLOCK <= source.length; offset += BLOCK) {
+            blocks.add(checksum(source, offset), offset);
+        }
+        return blocks;
+    }
+
+    private static int find(int[] candidates, byte[] source, byte[] target, int position) {
+        if (candidates == null) return -1;
+        for (int offset : candidates) {
+            if (Arrays.equals(source, offset, offset + BLOCK, target, position, position + BLOCK)) return offset;
+        }
+        return -1;
+    }
+
+    private static void insert(DataOutputStream data, byte[] target, int from, int to) throws IOException {
+        if (from == to) return;
+        data.writeByte(INSERT);
+        data.writeInt(to - from);
+        data.write(target, from, to - from);
+    }
+
+    /**
+     * Rolling checksum of a block as used by rsync.
+     */
+    private static int checksum(byte[] bytes, int offset) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            a += bytes[offset + i] & 0xFF;
+            b += (BLOCK - i) * (bytes[offset + i] & 0xFF);
+        }
+        return (a % MOD) | ((b % MOD) << 16);
+    }
+
+    private static int roll(int checksum, byte out, byte in) {
+        int a = checksum & 0xFFFF;
+        int b = checksum >>> 16;
+        a = Math.floorMod(a - (out & 0xFF) + (in & 0xFF), MOD);
+        b = Math.floorMod(b - BLOCK * (out & 0xFF) + a, MOD);
+        return a | (b << 16);
+    }
+
+    /**
+     * Offsets of source blocks by their checksum. A hash table of int arrays, as it is queried for every byte of the
+     * target and should not box the checksum. Most queries miss, which costs one read of {@link #heads}.
+     */
+    private static final class BlockIndex {
+        /**
+         * First entry of every bucket plus one. 0 marks an empty bucket.
+         */
+        private final int[] heads;
+        private final int[] checksums;
+        /**
+         * Next entry of the bucket plus one.
+         */
+        private final int[] next;
+        private final int[][] offsets;
+        private final int mask;
+        private int size;
+
+        private BlockIndex(int blocks) {
+            int buckets = Integer.highestOneBit(Math.max(1, blocks * 2 - 1)) << 1;
+            heads = new int[buckets];
+            checksums = new int[blocks];
+            next = new int[blocks];
+            offsets = new int[blocks][];
+            mask = buckets - 1;
+        }
+
+        private void add(int checksum, int offset) {
+            int bucket = bucket(checksum);
+            int entry = find(checksum, bucket);
+            if (entry < 0) {
+                checksums[size] = checksum;
+                offsets[size] = new int[]{offset};
+                next[size] = heads[bucket];
+                heads[bucket] = ++size;
+            } else if (offsets[entry].length < MAX_CANDIDATES) {
+                int[] candidates = Arrays.copyOf(offsets[entry], offsets[entry].length + 1);
+                candidates[candidates.length - 1] = offset;
+                offsets[entry] = candidates;
+            }
+        }
+
+        private int[] get(int checksum) {
+            int entry = find(checksum, bucket(checksum));
+            return entry < 0 ? null : offsets[entry];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private int find(int checksum, int bucket) {
+            for (int entry = heads[bucket] - 1; entry >= 0; entry = next[entry] - 1) {
+                if (checksums[entry] == checksum) return entry;
+            }
+            return -1;
+        }
+
+        private int bucket(int checksum) {
+            int hash = checksum * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
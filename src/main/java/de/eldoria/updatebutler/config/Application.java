@@ -4,9 +4,11 @@ import com.google.common.hash.Hashing;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import de.eldoria.updatebutler.util.ArgumentParser;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.ISnowflake;
@@ -15,23 +17,22 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.stream.Collectors;
 
 @Data
 public class Application {
     @Expose
-    private final Set<Long> owner;
+    private final CopyOnWriteArraySet<Long> owner;
     @Expose
     private final String webhook;
     @Expose
-    private final HashMap<String, Release> releases = new HashMap<>();
+    private final ConcurrentHashMap<String, Release> releases = new ConcurrentHashMap<>();
     /**
      * The id of the application. immutable
      */
@@ -41,22 +42,36 @@ public class Application {
      * A unique string identifier for this application. mutable.
      */
     @Expose
-    private String identifier;
+    private volatile String identifier;
     /**
      * The display name of the application
      */
     @SerializedName("display_name")
     @Expose
-    private String displayName;
+    private volatile String displayName;
     /**
      * Short description of the application
      */
     @Expose
-    private String description;
+    private volatile String description;
     @Expose
-    private String[] alias;
+    private volatile String[] alias;
     @Expose
-    private Long channel;
+    private volatile Long channel;
+    /**
+     * Sorted snapshot of the releases. Rebuilt when a release is added or deleted.
+     */
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile ReleaseIndex releaseIndex;
+
+    /**
+     * Constructor for gson.
+     */
+    private Application() {
+        owner = new CopyOnWriteArraySet<>();
+        webhook = null;
+    }
 
     public Application(int id, String identifier, String displayName, String description, String[] alias, Long owner, Long channel) {
         this.id = id;
@@ -64,7 +79,7 @@ public class Application {
         this.displayName = displayName;
         this.description = description;
         this.alias = alias;
-        this.owner = new HashSet<>(Collections.singletonList(owner));
+        this.owner = new CopyOnWriteArraySet<>(Collections.singletonList(owner));
         this.channel = channel;
         this.webhook = Hashing.sha256()
                 .hashString(displayName + Instant.now().toEpochMilli(), StandardCharsets.UTF_8)
@@ -83,25 +98,78 @@ public class Application {
         return owner.remove(user.getIdLong());
     }
 
-    public void addRelease(String key, Release release) {
+    public synchronized void addRelease(String key, Release release) {
         releases.put(key, release);
+        releaseIndex = ReleaseIndex.of(releases);
     }
 
     public Optional<Release> getRelease(String key) {
         if ("latest".equalsIgnoreCase(key)) {
-            return Optional.ofNullable(getReleases(true).get(0));
+            return getLatestVersion();
         }
 
-        for (var release : releases.entrySet()) {
-            if (release.getKey().equalsIgnoreCase(key.replace("_", " "))) {
-                return Optional.ofNullable(release.getValue());
-            }
+        return getReleaseIndex().find(key);
+    }
+
+    /**
+     * Get a release by its exact key.
+     *
+     * @param key key of the release
+     *
+     * @return release if present
+     */
+    public Optional<Release> getReleaseByKey(String key) {
+        return Optional.ofNullable(releases.get(key));
+    }
+
+    public synchronized boolean deleteRelease(String key) {
+        boolean removed = releases.remove(key) != null;
+        releaseIndex = ReleaseIndex.of(releases);
+        return removed;
+    }
+
+    /**
+     * Merge the pending download counts of all releases.
+     *
+     * @return releases with a changed download count
+     */
+    public List<Release> flushDownloads() {
+        List<Release> changed = new ArrayList<>();
+        for (Release release : releases.values()) {
+            if (release.flushDownloads()) changed.add(release);
         }
-        return Optional.empty();
+        return changed;
     }
 
-    public boolean deleteRelease(String key) {
-        return releases.remove(key) != null;
+    /**
+     * Apply the properties of another application. Releases and webhook are not changed.
+     *
+     * @param other application to copy
+     */
+    void apply(Application other) {
+        identifier = other.identifier;
+        displayName = other.displayName;
+        description = other.description;
+        alias = other.alias;
+        channel = other.channel;
+        owner.clear();
+        owner.addAll(other.owner);
+    }
+
+    /**
+     * Get the sorted snapshot of the releases of this application.
+     *
+     * @return release index
+     */
+    public ReleaseIndex getReleaseIndex() {
+        ReleaseIndex snapshot = releaseIndex;
+        if (snapshot != null) return snapshot;
+        synchronized (this) {
+            if (releaseIndex == null) {
+                releaseIndex = ReleaseIndex.of(releases);
+            }
+            return releaseIndex;
+        }
     }
 
     public MessageEmbed getReleaseInfo(Configuration configuration, ArgumentParser parser, Guild guild, Release release) {
@@ -159,10 +227,7 @@ public class Application {
     }
 
     public Optional<Release> getLatestStableVersion() {
-        if (releases.isEmpty()) return Optional.empty();
-        return releases.values().stream()
-                .filter(r -> !r.isDevBuild())
-                .max(Comparator.comparing(Release::getPublished));
+        return getReleaseIndex().getLatestStable();
     }
 
     /**
@@ -171,8 +236,7 @@ public class Application {
      * @return latest release
      */
     public Optional<Release> getLatestVersion() {
-        if (releases.isEmpty()) return Optional.empty();
-        return releases.values().stream().max(Comparator.comparing(Release::getPublished));
+        return getReleaseIndex().getLatest();
     }
 
     /**
@@ -183,12 +247,6 @@ public class Application {
      * @return list of dev builds.
      */
     public List<Release> getReleases(boolean dev) {
-        List<Release> collect = releases.values()
-                .stream()
-                .filter(r -> dev || !r.isDevBuild())
-                .sorted(Comparator.comparing(Release::getPublished))
-                .collect(Collectors.toList());
-        Collections.reverse(collect);
-        return Collections.unmodifiableList(collect);
+        return getReleaseIndex().getReleases(dev);
     }
 }
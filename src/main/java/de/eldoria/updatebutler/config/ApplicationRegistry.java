@@ -0,0 +1,225 @@
+package de.eldoria.updatebutler.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of all registered applications.
+ * <p>
+ * Applications are indexed by their numeric id, by their webhook hash and per guild by their id, identifier and
+ * aliases. The registry has to be notified when an application is added, removed or its names are changed.
+ * <p>
+ * Changes are serialized and published as copies, so lookups never lock and always see a consistent index.
+ */
+public class ApplicationRegistry {
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * Applications and their guilds. Replaced as a whole, so a reader never sees a application with the guild of
+     * another one.
+     */
+    private volatile Index index = new Index(new Application[INITIAL_CAPACITY], new String[INITIAL_CAPACITY]);
+    private final Map<String, Application> webhooks = new ConcurrentHashMap<>();
+    /**
+     * Guild id -> lower case identifier, id or alias -> application. The maps of the guilds are never modified.
+     */
+    private final Map<String, Map<String, Application>> names = new ConcurrentHashMap<>();
+
+    /**
+     * Register a application of a guild.
+     *
+     * @param guildId     id of the guild which owns the application
+     * @param application application to register
+     */
+    public void register(String guildId, Application application) {
+        registerAll(guildId, Collections.singletonList(application));
+    }
+
+    /**
+     * Register several applications of a guild at once. The index is copied and the names of the guild are rebuilt
+     * only once.
+     *
+     * @param guildId      id of the guild which owns the applications
+     * @param applications applications to register
+     */
+    public synchronized void registerAll(String guildId, Collection<Application> applications) {
+        List<Application> added = new ArrayList<>(applications);
+        if (added.isEmpty()) return;
+        Index current = index;
+        int maxId = 0;
+        for (Application application : added) {
+            maxId = Math.max(maxId, application.getId());
+        }
+        int capacity = current.applications.length;
+        while (capacity <= maxId) {
+            // grow geometrically, so the arrays are not resized for every new application id
+            capacity *= 2;
+        }
+        Application[] registered = Arrays.copyOf(current.applications, capacity);
+        String[] guilds = Arrays.copyOf(current.guilds, capacity);
+        Set<String> changedGuilds = new HashSet<>();
+        changedGuilds.add(guildId);
+        for (Application application : added) {
+            int id = application.getId();
+            Application old = registered[id];
+            if (old != null && old.getWebhook() != null) {
+                webhooks.remove(old.getWebhook());
+            }
+            if (guilds[id] != null) {
+                changedGuilds.add(guilds[id]);
+            }
+            registered[id] = application;
+            guilds[id] = guildId;
+        }
+        Index next = new Index(registered, guilds);
+        index = next;
+        for (Application application : added) {
+            if (application.getWebhook() != null) {
+                webhooks.put(application.getWebhook(), application);
+            }
+        }
+        for (String changed : changedGuilds) {
+            rebuildNames(next, changed);
+        }
+    }
+
+    /**
+     * Remove a application from the registry.
+     *
+     * @param application application to remove
+     */
+    public synchronized void unregister(Application application) {
+        int id = application.getId();
+        Index current = index;
+        if (id < 0 || id >= current.applications.length || current.applications[id] != application) return;
+        Application[] registered = current.applications.clone();
+        String[] guilds = current.guilds.clone();
+        String guildId = guilds[id];
+        registered[id] = null;
+        guilds[id] = null;
+        Index next = new Index(registered, guilds);
+        index = next;
+        if (application.getWebhook() != null) {
+            webhooks.remove(application.getWebhook());
+        }
+        rebuildNames(next, guildId);
+    }
+
+    /**
+     * Refresh the name index of a application after the identifier or the aliases were changed.
+     *
+     * @param application changed application
+     */
+    public synchronized void reindex(Application application) {
+        Index current = index;
+        getGuildId(application.getId()).ifPresent(guildId -> rebuildNames(current, guildId));
+    }
+
+    /**
+     * Get a application by id.
+     *
+     * @param id id of the application
+     *
+     * @return application if registered
+     */
+    public Optional<Application> getById(int id) {
+        Application[] applications = index.applications;
+        if (id < 0 || id >= applications.length) return Optional.empty();
+        return Optional.ofNullable(applications[id]);
+    }
+
+    /**
+     * Get the guild which owns a application.
+     *
+     * @param id id of the application
+     *
+     * @return guild id if the application is registered
+     */
+    public Optional<String> getGuildId(int id) {
+        String[] guilds = index.guilds;
+        if (id < 0 || id >= guilds.length) return Optional.empty();
+        return Optional.ofNullable(guilds[id]);
+    }
+
+    /**
+     * Get a application by the hash of its webhook.
+     *
+     * @param hash webhook hash
+     *
+     * @return application if a application with this webhook exists
+     */
+    public Optional<Application> getByWebhook(String hash) {
+        if (hash == null) return Optional.empty();
+        return Optional.ofNullable(webhooks.get(hash));
+    }
+
+    /**
+     * Get a application of a guild by id, identifier or alias. Case insensitive.
+     *
+     * @param guildId id of the guild
+     * @param name    id, identifier or alias of the application
+     *
+     * @return application if a application with this name exists on the guild
+     */
+    public Optional<Application> getByName(String guildId, String name) {
+        if (name == null) return Optional.empty();
+        Map<String, Application> guildNames = names.get(guildId);
+        if (guildNames == null) return Optional.empty();
+        return Optional.ofNullable(guildNames.get(normalize(name)));
+    }
+
+    private void rebuildNames(Index index, String guildId) {
+        if (guildId == null) return;
+        Application[] applications = index.applications;
+        String[] guilds = index.guilds;
+        Map<String, Application> guildNames = new HashMap<>();
+        for (int i = 0; i < applications.length; i++) {
+            Application application = applications[i];
+            if (application == null || !guildId.equals(guilds[i]) || application.getAlias() == null) continue;
+            // aliases have the lowest priority and may not shadow a identifier or id
+            for (String alias : application.getAlias()) {
+                guildNames.putIfAbsent(normalize(alias), application);
+            }
+        }
+        for (int i = 0; i < applications.length; i++) {
+            Application application = applications[i];
+            if (application == null || !guildId.equals(guilds[i])) continue;
+            guildNames.put(Integer.toString(application.getId()), application);
+            if (application.getIdentifier() != null) {
+                guildNames.put(normalize(application.getIdentifier()), application);
+            }
+        }
+        if (guildNames.isEmpty()) {
+            names.remove(guildId);
+        } else {
+            names.put(guildId, guildNames);
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Applications by id and the guild ids by application id. Application ids are assigned sequentially, so plain
+     * arrays are the densest index. The arrays are never modified after the index was published.
+     */
+    private static final class Index {
+        private final Application[] applications;
+        private final String[] guilds;
+
+        private Index(Application[] applications, String[] guilds) {
+            this.applications = applications;
+            this.guilds = guilds;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * Settings of the release files.
+ *
+ * @see de.eldoria.updatebutler.artifacts.ArtifactStore
+ * @see de.eldoria.updatebutler.artifacts.ArtifactCache
+ */
+@Data
+public class ArtifactSettings {
+    /**
+     * Maximum size of a release file in bytes. Larger files are rejected while they are downloaded.
+     */
+    @SerializedName("max_size")
+    @Expose
+    private long maxSize = 256L * 1024 * 1024;
+    /**
+     * Interval of the collection of release files which are no longer used by any release.
+     */
+    @SerializedName("collect_interval_minutes")
+    @Expose
+    private int collectIntervalMinutes = 360;
+    /**
+     * Minimum age of unused release files before they are collected. Protects files of releases which are created
+     * while the collection runs.
+     */
+    @SerializedName("collect_grace_minutes")
+    @Expose
+    private int collectGraceMinutes = 60;
+    /**
+     * Bytes of direct memory used to cache frequently downloaded release files. 0 disables the cache. The cache uses at
+     * most half of the direct memory limit of the jvm, which is set with -XX:MaxDirectMemorySize and defaults to the
+     * maximum heap size.
+     */
+    @SerializedName("cache_size")
+    @Expose
+    private long cacheSize = 256L * 1024 * 1024;
+    /**
+     * Maximum size of a cached release file in bytes. Larger files are always read from disk.
+     */
+    @SerializedName("cache_max_file_size")
+    @Expose
+    private long cacheMaxFileSize = 32L * 1024 * 1024;
+    /**
+     * Build a gzip compressed variant of new release files for clients which accept gzip.
+     */
+    @SerializedName("gzip_variants")
+    @Expose
+    private boolean gzipVariants = true;
+    /**
+     * Build deltas from the latest and the latest stable release to a new release.
+     */
+    @Expose
+    private boolean deltas = true;
+    /**
+     * Maximum size of release files which are diffed. Both files are read into memory.
+     */
+    @SerializedName("delta_max_size")
+    @Expose
+    private long deltaMaxSize = 64L * 1024 * 1024;
+    /**
+     * Compressed variants and deltas are only kept if they have at most this share of the size of the release file.
+     */
+    @SerializedName("variant_max_ratio")
+    @Expose
+    private double variantMaxRatio = 0.9;
+}
@@ -0,0 +1,25 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * Compression of responses which are created per request, like update checks and debug pages.
+ * <p>
+ * Release files are never compressed per request. They are served from the precompressed variants which are built
+ * when a release is created.
+ *
+ * @see ArtifactSettings#isGzipVariants()
+ */
+@Data
+public class CompressionSettings {
+    @Expose
+    private boolean enabled = true;
+    /**
+     * Responses smaller than this amount of bytes are sent uncompressed.
+     */
+    @SerializedName("min_size")
+    @Expose
+    private int minSize = 512;
+}
@@ -1,41 +1,88 @@
 package de.eldoria.updatebutler.config;
 
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.stream.JsonReader;
+import de.eldoria.updatebutler.artifacts.ArtifactCache;
+import de.eldoria.updatebutler.artifacts.ArtifactStore;
 import de.eldoria.updatebutler.config.commands.UserCommand;
 import de.eldoria.updatebutler.config.phrase.Phrase;
 import de.eldoria.updatebutler.config.util.GsonAdapter;
 import de.eldoria.updatebutler.listener.ReleaseCreateListener;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
 import de.eldoria.updatebutler.util.FileUtil;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-
-import static de.eldoria.updatebutler.util.FileUtil.home;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 @Slf4j
 @Data
 public class Configuration {
 
-    private static final Gson GSON = new GsonBuilder()
+    private static final long SAVE_DELAY = 2000;
+    /**
+     * Amount of journal records which trigger a compaction.
+     */
+    private static final int COMPACTION_RECORDS = 1000;
+    /**
+     * Journal size in bytes which triggers a compaction.
+     */
+    private static final long COMPACTION_SIZE = 4 * 1024 * 1024;
+    static final Gson GSON = gsonBuilder()
             .serializeNulls()
-            .excludeFieldsWithoutExposeAnnotation()
             .setPrettyPrinting()
-            .registerTypeAdapter(UserCommand.class,
-                    new GsonAdapter<UserCommand>("de.eldoria.updatebutler.config.commands"))
-            .registerTypeAdapter(Phrase.class,
-                    new GsonAdapter<Phrase>("de.eldoria.updatebutler.config.phrase"))
+            .create();
+    /**
+     * Gson for journal records. Guild records do not contain applications and application records do not contain
+     * releases, which are journaled separately.
+     */
+    private static final Gson JOURNAL_GSON = gsonBuilder()
+            .setExclusionStrategies(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes f) {
+                    return f.getDeclaringClass() == GuildSettings.class && "applications".equals(f.getName())
+                            || f.getDeclaringClass() == Application.class && "releases".equals(f.getName());
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> clazz) {
+                    return false;
+                }
+            })
             .create();
     @Expose
     private String token = "";
@@ -45,66 +92,433 @@ public class Configuration {
     private String host = "";
     @Expose
     private int port = 19050;
-    @SerializedName("guildSettings")
-    @Expose
-    private HashMap<String, GuildSettings> guildSettings = new HashMap<>();
     private ReleaseCreateListener listener;
+    private ArtifactStore artifactStore;
+    private ArtifactCache artifactCache;
     @Expose
-    private int currentId = 0;
+    private volatile int currentId = 0;
     @Expose
     private DBSettings dbSettings;
+    @SerializedName("rate_limits")
+    @Expose
+    private RateLimitSettings rateLimits = new RateLimitSettings();
+    /**
+     * Proxies in CIDR notation which are allowed to set the X-Forwarded-For and X-Real-IP headers.
+     */
+    @SerializedName("trusted_proxies")
+    @Expose
+    private List<String> trustedProxies = new ArrayList<>(List.of("127.0.0.1/32", "::1/128"));
+    @Expose
+    private MetricsSettings metrics = new MetricsSettings();
+    @Expose
+    private ExecutionSettings execution = new ExecutionSettings();
+    @SerializedName("webhook_queue")
+    @Expose
+    private WebhookSettings webhookQueue = new WebhookSettings();
+    @Expose
+    private ArtifactSettings artifacts = new ArtifactSettings();
+    @Expose
+    private CompressionSettings compression = new CompressionSettings();
+    /**
+     * Guild of every application. Allows to load the guild of a application when it is requested by id.
+     */
+    @SerializedName("application_guilds")
+    @Expose
+    private final ConcurrentHashMap<Integer, String> applicationGuilds = new ConcurrentHashMap<>();
+    /**
+     * Application id of every webhook.
+     */
+    @SerializedName("webhooks")
+    @Expose
+    private final ConcurrentHashMap<String, Integer> webhooks = new ConcurrentHashMap<>();
+    /**
+     * Time channel of every guild which has one. Allows to refresh time channels without loading every guild.
+     */
+    @SerializedName("time_channels")
+    @Expose
+    private final ConcurrentHashMap<String, Long> timeChannels = new ConcurrentHashMap<>();
+    /**
+     * Notified after a application was deleted.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final transient List<Consumer<Application>> deleteListeners = new CopyOnWriteArrayList<>();
+    /**
+     * Guild settings which were loaded since the start.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final transient Map<String, GuildSettings> guildSettings = new ConcurrentHashMap<>();
+    /**
+     * Guilds which changed since the last snapshot.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final transient Set<String> dirtyGuilds = ConcurrentHashMap.newKeySet();
+    private final transient ApplicationRegistry applicationRegistry = new ApplicationRegistry();
+    @Setter(AccessLevel.NONE)
+    private transient Path guildDirectory;
+    @Setter(AccessLevel.NONE)
+    private transient ConfigurationPersistence persistence;
+    @Setter(AccessLevel.NONE)
+    private transient ConfigurationJournal journal;
+    /**
+     * Builds the variants of new releases.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final transient ExecutorService variantBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Release variant builder");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public static Configuration load() throws IOException {
-        File config = FileUtil.createDirectory("config");
-        try (var in = ClassLoader.getSystemClassLoader().getResourceAsStream("config.json")) {
-            var file = FileUtil.createFile(in, "/config/config.json");
-            try (JsonReader reader = new JsonReader(new FileReader(file))) {
-                return GSON.fromJson(reader, Configuration.class);
+        return load(Path.of(FileUtil.home(), "config"));
+    }
+
+    /**
+     * Load the configuration of a directory. A default configuration is created if the directory contains none.
+     *
+     * @param directory configuration directory
+     *
+     * @return loaded configuration
+     *
+     * @throws IOException when the configuration could not be read or created
+     */
+    public static Configuration load(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("config.json");
+        if (!Files.exists(file)) {
+            try (var in = Configuration.class.getClassLoader().getResourceAsStream("config.json")) {
+                Files.copy(in, file);
             }
         }
+        JsonObject json;
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            json = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        // guild settings were part of the main file in older versions
+        JsonElement legacyGuilds = json.remove("guildSettings");
+        Configuration configuration = GSON.fromJson(json, Configuration.class);
+        configuration.guildDirectory = Files.createDirectories(directory.resolve("guilds"));
+        if (legacyGuilds != null && legacyGuilds.isJsonObject()) {
+            configuration.migrate(legacyGuilds.getAsJsonObject());
+        }
+        configuration.initJournal(file, directory.resolve("journal.log"));
+        return configuration;
     }
 
+    private static GsonBuilder gsonBuilder() {
+        return new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapterFactory(new ReleaseAdapterFactory())
+                .registerTypeAdapter(UserCommand.class,
+                        new GsonAdapter<UserCommand>("de.eldoria.updatebutler.config.commands"))
+                .registerTypeAdapter(Phrase.class,
+                        new GsonAdapter<Phrase>("de.eldoria.updatebutler.config.phrase"));
+    }
+
+    /**
+     * Move the guild settings of a old configuration into their own files.
+     *
+     * @param legacyGuilds guild settings of the old configuration
+     */
+    private void migrate(JsonObject legacyGuilds) {
+        for (Map.Entry<String, JsonElement> entry : legacyGuilds.entrySet()) {
+            GuildSettings settings = GSON.fromJson(entry.getValue(), GuildSettings.class);
+            settings.attach(entry.getKey(), applicationRegistry);
+            guildSettings.put(entry.getKey(), settings);
+            indexGuild(entry.getKey(), settings);
+            for (Application application : settings.getApplications().values()) {
+                indexApplication(entry.getKey(), application);
+            }
+            dirtyGuilds.add(entry.getKey());
+        }
+        log.info("Migrating {} guilds to separate files.", legacyGuilds.size());
+    }
+
+    private void initJournal(Path snapshot, Path journalFile) throws IOException {
+        journal = new ConfigurationJournal(journalFile, JOURNAL_GSON);
+        persistence = new ConfigurationPersistence("configuration",
+                () -> journal.compact(() -> writeSnapshot(snapshot)), SAVE_DELAY);
+
+        List<JournalRecord> records = journal.read();
+        for (JournalRecord record : records) {
+            replay(record);
+            markDirty(record);
+        }
+        journal.open();
+        if (!records.isEmpty()) {
+            log.info("Replayed {} journal records.", records.size());
+        }
+        if (!records.isEmpty() || !dirtyGuilds.isEmpty()) {
+            persistence.markDirty();
+            persistence.flush();
+        }
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        MetricsRegistry metrics = Metrics.registry();
+        metrics.gauge("updatebutler_config_snapshot_writes", "Written configuration snapshots.",
+                persistence::getWrites);
+        metrics.gauge("updatebutler_config_snapshot_failures", "Failed configuration snapshot writes.",
+                persistence::getFailedWrites);
+        metrics.gauge("updatebutler_config_snapshot_duration_seconds", "Duration of the last snapshot write.",
+                () -> persistence.getLastWriteDuration() / 1000.0);
+        metrics.gauge("updatebutler_config_snapshot_pending_age_seconds", "Age of changes which are not in a snapshot.",
+                () -> persistence.getPendingAge() / 1000.0);
+        metrics.gauge("updatebutler_config_journal_records", "Records in the configuration journal.",
+                journal::getRecords);
+        metrics.gauge("updatebutler_config_journal_bytes", "Size of the configuration journal.", journal::getSize);
+        metrics.gauge("updatebutler_config_loaded_guilds", "Guild settings which are loaded into memory.",
+                guildSettings::size);
+        metrics.gauge("updatebutler_config_applications", "Registered applications.", applicationGuilds::size);
+    }
+
+    /**
+     * Write all changed guilds and the main configuration. Only called while the journal is locked.
+     *
+     * @param snapshot file of the main configuration
+     *
+     * @throws IOException when a file could not be written
+     */
+    private void writeSnapshot(Path snapshot) throws IOException {
+        for (String guildId : new ArrayList<>(dirtyGuilds)) {
+            GuildSettings settings = guildSettings.get(guildId);
+            if (settings != null) {
+                FileUtil.writeAtomically(guildFile(guildId), writer -> GSON.toJson(settings, writer));
+            }
+            dirtyGuilds.remove(guildId);
+        }
+        FileUtil.writeAtomically(snapshot, writer -> GSON.toJson(this, writer));
+    }
+
+    private Path guildFile(String guildId) {
+        return guildDirectory.resolve(guildId + ".json");
+    }
+
+    /**
+     * Get the settings of a guild. The settings are loaded from their file on first access and created if the guild
+     * is unknown.
+     *
+     * @param id id of the guild
+     *
+     * @return settings of the guild
+     */
     public GuildSettings getGuildSettings(String id) {
-        if (!this.guildSettings.containsKey(id)) {
-            this.guildSettings.put(id, new GuildSettings());
-            save();
+        GuildSettings settings = guildSettings.get(id);
+        if (settings != null) return settings;
+        synchronized (this) {
+            settings = loadGuild(id);
+            if (settings == null) {
+                settings = createGuild(id);
+                guildChanged(id);
+            }
+            return settings;
         }
-        return guildSettings.get(id);
     }
 
-    public void save() {
-        try (var a = new FileWriter(Paths.get(home(), "/config/config.json").toFile())) {
-            GSON.toJson(this, a);
+    /**
+     * Load the settings of a guild from its file if they are not loaded yet.
+     *
+     * @param guildId id of the guild
+     *
+     * @return settings or null if the guild has no file
+     */
+    private synchronized GuildSettings loadGuild(String guildId) {
+        GuildSettings settings = guildSettings.get(guildId);
+        if (settings != null) return settings;
+        Path file = guildFile(guildId);
+        if (!Files.exists(file)) return null;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            settings = GSON.fromJson(reader, GuildSettings.class);
         } catch (IOException e) {
-            log.warn("Could not save config", e);
+            throw new UncheckedIOException("Could not load settings of guild " + guildId, e);
         }
+        settings.attach(guildId, applicationRegistry);
+        guildSettings.put(guildId, settings);
+        log.debug("Loaded settings of guild {}", guildId);
+        return settings;
     }
 
-    public int getNextAppId() {
-        currentId++;
-        save();
-        return currentId;
+    private synchronized GuildSettings createGuild(String guildId) {
+        GuildSettings settings = new GuildSettings();
+        settings.attach(guildId, applicationRegistry);
+        guildSettings.put(guildId, settings);
+        return settings;
     }
 
-    public Optional<Application> getApplicationById(int id) {
-        for (GuildSettings value : guildSettings.values()) {
-            Application application = value.getApplications().get(Integer.toString(id));
-            if (application != null) {
-                return Optional.of(application);
+    /**
+     * Count the releases which use each release file. Guilds which are not loaded are read from their files without
+     * loading them.
+     *
+     * @return amount of releases by checksum of their file
+     *
+     * @throws IOException when a guild file could not be read
+     */
+    public Map<String, Integer> countArtifactReferences() throws IOException {
+        Map<String, Integer> references = new HashMap<>();
+        Set<String> counted = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(guildDirectory, "*.json")) {
+            for (Path file : files) {
+                String guildId = file.getFileName().toString().replaceFirst("\\.json$", "");
+                // a guild which is loaded after this check is still equal to its file
+                GuildSettings settings = guildSettings.get(guildId);
+                if (settings == null) {
+                    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                        settings = GSON.fromJson(reader, GuildSettings.class);
+                    }
+                }
+                countReferences(settings, references);
+                counted.add(guildId);
             }
         }
-        return Optional.empty();
+        for (Map.Entry<String, GuildSettings> entry : guildSettings.entrySet()) {
+            if (!counted.contains(entry.getKey())) {
+                countReferences(entry.getValue(), references);
+            }
+        }
+        return references;
     }
 
-    public Optional<Application> getApplicationByWebhook(String hash) {
-        for (GuildSettings value : guildSettings.values()) {
-            for (Application application : value.getApplications().values()) {
-                if (application.getWebhook().equals(hash)) {
-                    return Optional.of(application);
+    private static void countReferences(GuildSettings settings, Map<String, Integer> references) {
+        if (settings == null) return;
+        for (Application application : settings.getApplications().values()) {
+            for (Release release : application.getReleases().values()) {
+                if (release.getChecksum() != null) {
+                    references.merge(release.getChecksum(), 1, Integer::sum);
+                }
+                if (release.getGzip() != null) {
+                    references.merge(release.getGzip().getChecksum(), 1, Integer::sum);
+                }
+                for (ReleaseVariant delta : release.getDeltas().values()) {
+                    references.merge(delta.getChecksum(), 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the ids of all guilds with a time channel.
+     *
+     * @return guild ids
+     */
+    public Set<String> getTimeChannelGuilds() {
+        return Collections.unmodifiableSet(timeChannels.keySet());
+    }
+
+    /**
+     * Write a full snapshot of the configuration in the background. Multiple requests in a short period are written at
+     * once.
+     * <p>
+     * Changes should be reported with the specific change methods like {@link #guildChanged(String)} instead.
+     */
+    public void save() {
+        flushDownloadCounters();
+        persistence.markDirty();
+    }
+
+    /**
+     * Write a snapshot of the configuration and wait until it is persisted.
+     */
+    public void flush() {
+        flushDownloadCounters();
+        persistence.markDirty();
+        persistence.flush();
+    }
+
+    /**
+     * Persist the settings of a guild after they were changed. This does not include the applications of the guild.
+     *
+     * @param guildId id of the guild
+     */
+    public void guildChanged(String guildId) {
+        GuildSettings settings = guildSettings.get(guildId);
+        if (settings == null) return;
+        indexGuild(guildId, settings);
+        journal(JournalRecord.guild(guildId, settings));
+    }
+
+    /**
+     * Persist the properties of a application after they were changed. This does not include the releases.
+     *
+     * @param application changed application
+     */
+    public void applicationChanged(Application application) {
+        applicationRegistry.getGuildId(application.getId()).ifPresent(guildId -> {
+            indexApplication(guildId, application);
+            journal(JournalRecord.application(guildId, application));
+        });
+    }
+
+    /**
+     * Persist the deletion of a application.
+     *
+     * @param application deleted application
+     */
+    public void applicationDeleted(Application application) {
+        String guildId = applicationGuilds.remove(application.getId());
+        if (application.getWebhook() != null) {
+            webhooks.remove(application.getWebhook());
+        }
+        journal(JournalRecord.applicationDeleted(guildId, application.getId()));
+        for (Consumer<Application> listener : deleteListeners) {
+            listener.accept(application);
+        }
+    }
+
+    /**
+     * Register a listener which is notified after a application was deleted.
+     *
+     * @param listener listener to register
+     */
+    public void onApplicationDeleted(Consumer<Application> listener) {
+        deleteListeners.add(listener);
+    }
+
+    /**
+     * Persist the download counts of all releases which were downloaded since the last flush.
+     */
+    public void saveDownloadCounters() {
+        flushDownloadCounters();
+    }
+
+    private void flushDownloadCounters() {
+        for (GuildSettings settings : guildSettings.values()) {
+            for (Application application : settings.getApplications().values()) {
+                for (Release release : application.flushDownloads()) {
+                    journal(JournalRecord.downloads(application.getId(), release.getVersion(), release.getDownloads()));
                 }
             }
         }
-        return Optional.empty();
+    }
+
+    public synchronized int getNextAppId() {
+        currentId++;
+        journal(JournalRecord.currentId(currentId));
+        return currentId;
+    }
+
+    public Optional<Application> getApplicationById(int id) {
+        Optional<Application> application = applicationRegistry.getById(id);
+        if (application.isPresent()) return application;
+        String guildId = applicationGuilds.get(id);
+        if (guildId == null || loadGuild(guildId) == null) return Optional.empty();
+        return applicationRegistry.getById(id);
+    }
+
+    public Optional<Application> getApplicationByWebhook(String hash) {
+        Optional<Application> application = applicationRegistry.getByWebhook(hash);
+        if (application.isPresent()) return application;
+        Integer id = webhooks.get(hash);
+        if (id == null) return Optional.empty();
+        return getApplicationById(id);
     }
 
     public void setReleaseListener(ReleaseCreateListener listener) {
@@ -112,8 +526,170 @@ public class Configuration {
     }
 
     public void addRelease(Application application, Release release) {
-        application.addRelease(release.getVersion(), release);
+        Set<Release> previous = new LinkedHashSet<>();
+        // ordered with deletions, the journal record of built variants and addReleaseIfAbsent
+        synchronized (application) {
+            // deltas start from the releases which were the latest before this release
+            application.getLatestVersion().ifPresent(previous::add);
+            application.getLatestStableVersion().ifPresent(previous::add);
+            application.addRelease(release.getVersion(), release);
+            journal(JournalRecord.release(application.getId(), release.getVersion(), release));
+        }
         listener.onReleaseCreation(application, release);
-        save();
+        if (artifactCache != null) {
+            // new releases are downloaded by most users shortly after they are announced.
+            artifactCache.warm(release.getChecksum(), Paths.get(release.getFile()));
+        }
+        if (artifactStore != null && release.getChecksum() != null) {
+            variantBuilder.execute(() -> buildVariants(application, release, previous));
+        }
+    }
+
+    /**
+     * Add a release unless the application has a release of the same version.
+     *
+     * @param application application of the release
+     * @param release     release to add
+     *
+     * @return true if the release was added
+     */
+    public boolean addReleaseIfAbsent(Application application, Release release) {
+        synchronized (application) {
+            if (application.getReleaseByKey(release.getVersion()).isPresent()) return false;
+            addRelease(application, release);
+            return true;
+        }
+    }
+
+    /**
+     * Build the variants of a published release. The release is served without variants until they are built.
+     */
+    private void buildVariants(Application application, Release release, Set<Release> previous) {
+        try {
+            if (!ReleaseBuilder.buildVariants(this, release, previous)) return;
+        } catch (RuntimeException e) {
+            log.error("Could not build the variants of release {}.", release.getVersion(), e);
+            return;
+        }
+        // the application lock orders this record before a deletion of the release, which it would revert otherwise
+        synchronized (application) {
+            if (application.getReleaseByKey(release.getVersion()).orElse(null) != release) return;
+            journal(JournalRecord.release(application.getId(), release.getVersion(), release));
+        }
+    }
+
+    /**
+     * Delete a release of a application.
+     *
+     * @param application application of the release
+     * @param version     version of the release
+     *
+     * @return true if the release was deleted
+     */
+    public boolean deleteRelease(Application application, String version) {
+        // ordered with the journal record of built variants
+        synchronized (application) {
+            boolean deleted = application.deleteRelease(version);
+            if (deleted) {
+                journal(JournalRecord.releaseDeleted(application.getId(), version));
+            }
+            return deleted;
+        }
+    }
+
+    private void journal(JournalRecord record) {
+        boolean appended = journal.append(record);
+        // marked after the append, which waits for a running compaction
+        markDirty(record);
+        if (!appended) {
+            // fall back to a full snapshot
+            persistence.markDirty();
+            return;
+        }
+        if (journal.getRecords() >= COMPACTION_RECORDS || journal.getSize() >= COMPACTION_SIZE) {
+            persistence.markDirty();
+        }
+    }
+
+    private void markDirty(JournalRecord record) {
+        String guildId = record.getGuild();
+        if (guildId == null) {
+            guildId = applicationGuilds.get(record.getId());
+        }
+        if (guildId != null) {
+            dirtyGuilds.add(guildId);
+        }
+    }
+
+    private void indexGuild(String guildId, GuildSettings settings) {
+        if (settings.getTimeChannel() == 0) {
+            timeChannels.remove(guildId);
+        } else {
+            timeChannels.put(guildId, settings.getTimeChannel());
+        }
+    }
+
+    private void indexApplication(String guildId, Application application) {
+        applicationGuilds.put(application.getId(), guildId);
+        if (application.getWebhook() != null) {
+            webhooks.put(application.getWebhook(), application.getId());
+        }
+    }
+
+    private void replay(JournalRecord record) {
+        switch (record.getType()) {
+            case CURRENT_ID:
+                currentId = Math.max(currentId, record.getValue());
+                break;
+            case GUILD: {
+                GuildSettings settings = loadGuild(record.getGuild());
+                if (settings == null) {
+                    settings = createGuild(record.getGuild());
+                }
+                settings.apply(record.getSettings());
+                indexGuild(record.getGuild(), settings);
+                break;
+            }
+            case APPLICATION: {
+                Optional<Application> application = getApplicationById(record.getId());
+                if (application.isPresent()) {
+                    application.get().apply(record.getApplication());
+                    applicationRegistry.reindex(application.get());
+                } else {
+                    GuildSettings settings = loadGuild(record.getGuild());
+                    if (settings == null) {
+                        settings = createGuild(record.getGuild());
+                    }
+                    settings.addApplication(Integer.toString(record.getId()), record.getApplication());
+                }
+                indexApplication(record.getGuild(), record.getApplication());
+                break;
+            }
+            case APPLICATION_DELETE: {
+                Optional<Application> application = getApplicationById(record.getId());
+                if (application.isEmpty()) break;
+                applicationRegistry.getGuildId(record.getId())
+                        .map(guildSettings::get)
+                        .ifPresent(settings -> settings.removeApplication(Integer.toString(record.getId())));
+                applicationGuilds.remove(record.getId());
+                if (application.get().getWebhook() != null) {
+                    webhooks.remove(application.get().getWebhook());
+                }
+                break;
+            }
+            case RELEASE:
+                getApplicationById(record.getId())
+                        .ifPresent(application -> application.addRelease(record.getVersion(), record.getRelease()));
+                break;
+            case RELEASE_DELETE:
+                getApplicationById(record.getId())
+                        .ifPresent(application -> application.deleteRelease(record.getVersion()));
+                break;
+            case DOWNLOADS:
+                getApplicationById(record.getId())
+                        .flatMap(application -> application.getReleaseByKey(record.getVersion()))
+                        .ifPresent(release -> release.setDownloads(record.getValue()));
+                break;
+        }
     }
 }
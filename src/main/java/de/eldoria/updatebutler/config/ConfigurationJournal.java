@@ -0,0 +1,129 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append only log of configuration changes.
+ * <p>
+ * Every change is appended as a single json line and synced to disk. The journal is truncated when a new snapshot of
+ * the configuration was written.
+ */
+@Slf4j
+public class ConfigurationJournal {
+    private final Path file;
+    private final Gson gson;
+    private FileChannel channel;
+    private int records;
+    private long size;
+
+    ConfigurationJournal(Path file, Gson gson) {
+        this.file = file;
+        this.gson = gson;
+    }
+
+    /**
+     * Read all records of the journal. A incomplete last record is skipped.
+     *
+     * @return records in the order they were written
+     *
+     * @throws IOException when the journal could not be read
+     */
+    synchronized List<JournalRecord> read() throws IOException {
+        List<JournalRecord> result = new ArrayList<>();
+        if (!Files.exists(file)) return result;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    result.add(gson.fromJson(line, JournalRecord.class));
+                } catch (JsonParseException e) {
+                    log.warn("Skipping corrupted journal record {} and all following records.", result.size() + 1, e);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Open the journal for appending.
+     *
+     * @throws IOException when the journal could not be opened
+     */
+    synchronized void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    /**
+     * Append a record to the journal and sync it to disk.
+     *
+     * @param record record to append
+     *
+     * @return true if the record was persisted
+     */
+    synchronized boolean append(JournalRecord record) {
+        ByteBuffer buffer = ByteBuffer.wrap((gson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("Could not append to configuration journal.", e);
+            return false;
+        }
+        records++;
+        return true;
+    }
+
+    /**
+     * Write a new snapshot and truncate the journal.
+     * <p>
+     * Appends are blocked while the snapshot is written. Changes which are applied in memory but not yet appended are
+     * part of the snapshot and will be appended afterwards, which is safe because records are idempotent.
+     *
+     * @param snapshot action which writes the snapshot
+     *
+     * @throws IOException when the snapshot could not be written
+     */
+    synchronized void compact(ConfigurationPersistence.PersistAction snapshot) throws IOException {
+        snapshot.persist();
+        channel.truncate(0);
+        channel.force(true);
+        records = 0;
+        size = 0;
+    }
+
+    /**
+     * Get the amount of records appended since the last compaction.
+     *
+     * @return record count
+     */
+    public synchronized int getRecords() {
+        return records;
+    }
+
+    /**
+     * Get the size of the journal.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+}
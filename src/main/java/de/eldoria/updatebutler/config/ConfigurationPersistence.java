@@ -0,0 +1,137 @@
+package de.eldoria.updatebutler.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists a state in the background.
+ * <p>
+ * Save requests only mark the state as dirty. All requests which arrive until the write starts are coalesced into a
+ * single write.
+ */
+@Slf4j
+public class ConfigurationPersistence {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Configuration persistence");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final String name;
+    private final PersistAction action;
+    private final long delay;
+    private volatile long pendingSince;
+    private volatile long lastWriteDuration;
+    private volatile long lastWrite;
+
+    /**
+     * Create a new persistence.
+     *
+     * @param name   name of the persisted state for logging
+     * @param action action which writes the state
+     * @param delay  delay in milliseconds between the first save request and the write
+     */
+    public ConfigurationPersistence(String name, PersistAction action, long delay) {
+        this.name = name;
+        this.action = action;
+        this.delay = delay;
+    }
+
+    /**
+     * Mark the state as changed. The state will be written in the background.
+     */
+    public void markDirty() {
+        if (dirty.compareAndSet(false, true)) {
+            pendingSince = System.currentTimeMillis();
+            executor.schedule(this::write, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write pending changes and wait until they are persisted.
+     */
+    public void flush() {
+        try {
+            executor.submit(this::write).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Could not flush {}", name, e);
+        }
+    }
+
+    /**
+     * Check if changes are waiting to be written.
+     *
+     * @return true if changes are pending
+     */
+    public boolean isPending() {
+        return dirty.get();
+    }
+
+    /**
+     * Get the age of the oldest change which was not written yet.
+     *
+     * @return age in milliseconds or 0 if nothing is pending
+     */
+    public long getPendingAge() {
+        return dirty.get() ? System.currentTimeMillis() - pendingSince : 0;
+    }
+
+    /**
+     * Get the duration of the last successful write.
+     *
+     * @return duration in milliseconds
+     */
+    public long getLastWriteDuration() {
+        return lastWriteDuration;
+    }
+
+    /**
+     * Get the time of the last successful write.
+     *
+     * @return epoch milliseconds or 0 if nothing was written yet
+     */
+    public long getLastWrite() {
+        return lastWrite;
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    private void write() {
+        if (!dirty.compareAndSet(true, false)) return;
+        long start = System.nanoTime();
+        try {
+            action.persist();
+        } catch (Exception e) {
+            log.warn("Could not save {}. Retrying.", name, e);
+            failedWrites.incrementAndGet();
+            markDirty();
+            return;
+        }
+        lastWriteDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastWrite = System.currentTimeMillis();
+        writes.incrementAndGet();
+        log.debug("Saved {} in {} ms", name, lastWriteDuration);
+    }
+
+    @FunctionalInterface
+    public interface PersistAction {
+        void persist() throws IOException;
+    }
+}
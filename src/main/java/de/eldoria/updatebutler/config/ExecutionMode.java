@@ -0,0 +1,26 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Defines how requests of the web api are executed.
+ */
+public enum ExecutionMode {
+    /**
+     * All requests share the jetty thread pool without limits.
+     */
+    @SerializedName("shared")
+    SHARED,
+    /**
+     * Every route class may only use a limited amount of threads of the jetty thread pool. Slow downloads can not
+     * starve update checks.
+     */
+    @SerializedName("routes")
+    ROUTES,
+    /**
+     * Like {@link #ROUTES}, but jetty runs on virtual threads. Requires java 21 or java 19+ with preview features
+     * enabled. Falls back to {@link #ROUTES} on older runtimes.
+     */
+    @SerializedName("virtual")
+    VIRTUAL
+}
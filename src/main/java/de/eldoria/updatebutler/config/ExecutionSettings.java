@@ -0,0 +1,37 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import lombok.Data;
+
+/**
+ * Request execution of the web api.
+ * <p>
+ * The route limits are only applied if the {@link #mode} is not {@link ExecutionMode#SHARED}. Assets and preflight
+ * requests are never limited.
+ */
+@Data
+public class ExecutionSettings {
+    @Expose
+    private ExecutionMode mode = ExecutionMode.SHARED;
+    /**
+     * Update checks and batch update checks.
+     */
+    @Expose
+    private RouteLimitSettings check = new RouteLimitSettings(64, 1024, 10);
+    /**
+     * Release downloads. Threads are blocked while the file is written to slow clients, so queued downloads may wait
+     * longer.
+     */
+    @Expose
+    private RouteLimitSettings download = new RouteLimitSettings(32, 256, 30);
+    /**
+     * Debug submissions and reads. Threads are blocked by database operations.
+     */
+    @Expose
+    private RouteLimitSettings debug = new RouteLimitSettings(8, 64, 10);
+    /**
+     * Github webhooks. Releases are built by the webhook queue, so these requests are short.
+     */
+    @Expose
+    private RouteLimitSettings webhook = new RouteLimitSettings(4, 16, 10);
+}
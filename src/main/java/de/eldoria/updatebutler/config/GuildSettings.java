@@ -4,19 +4,18 @@ import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import de.eldoria.updatebutler.config.commands.UserCommand;
 import de.eldoria.updatebutler.config.phrase.Phrase;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Member;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -25,22 +24,57 @@ import java.util.stream.Collectors;
 public class GuildSettings {
     @SerializedName("allowed_users")
     @Expose
-    private final Set<Long> allowedUsers = new HashSet<>();
+    private final CopyOnWriteArraySet<Long> allowedUsers = new CopyOnWriteArraySet<>();
     @Expose
-    private final Map<String, Application> applications = new HashMap<>();
+    private final ConcurrentHashMap<String, Application> applications = new ConcurrentHashMap<>();
     @Expose
-    private final Set<UserCommand> userCommands = new HashSet<>();
+    private final CopyOnWriteArraySet<UserCommand> userCommands = new CopyOnWriteArraySet<>();
     @Expose
-    private final List<Phrase> phrases = new ArrayList<>();
+    private final CopyOnWriteArrayList<Phrase> phrases = new CopyOnWriteArrayList<>();
     @Setter
     @Expose
-    private String prefix = "+";
+    private volatile String prefix = "+";
     @Setter
     @Expose
-    private long timeChannel = 0L;
+    private volatile long timeChannel = 0L;
     @Setter
     @Expose
-    private String timeZone = "";
+    private volatile String timeZone = "";
+    @Setter(AccessLevel.NONE)
+    private transient String guildId;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient ApplicationRegistry registry;
+
+    /**
+     * Bind the settings to their guild and register all applications of the guild.
+     *
+     * @param guildId  id of the guild
+     * @param registry registry of the configuration
+     */
+    void attach(String guildId, ApplicationRegistry registry) {
+        this.guildId = guildId;
+        this.registry = registry;
+        registry.registerAll(guildId, applications.values());
+    }
+
+    /**
+     * Apply the settings of another guild settings object. Applications are not changed.
+     *
+     * @param other settings to copy
+     */
+    void apply(GuildSettings other) {
+        allowedUsers.clear();
+        allowedUsers.addAll(other.allowedUsers);
+        userCommands.clear();
+        userCommands.addAll(other.userCommands);
+        phrases.clear();
+        phrases.addAll(other.phrases);
+        prefix = other.prefix;
+        timeChannel = other.timeChannel;
+        timeZone = other.timeZone;
+    }
 
     public boolean isAllowedUser(Member member) {
         return allowedUsers.contains(member.getIdLong()) || member.isOwner() || member.hasPermission(Permission.ADMINISTRATOR);
@@ -55,41 +89,28 @@ public class GuildSettings {
     }
 
     public Optional<Application> getApplication(String name) {
-        for (var entry : applications.entrySet()) {
-            if (entry.getValue().getIdentifier().equalsIgnoreCase(name)) {
-                return Optional.ofNullable(entry.getValue());
-            }
-
-            if (entry.getKey().equalsIgnoreCase(name)) {
-                return Optional.ofNullable(entry.getValue());
-            }
-
-            for (String alias : entry.getValue().getAlias()) {
-                if (alias.equalsIgnoreCase(name)) {
-                    return Optional.ofNullable(entry.getValue());
-                }
-            }
-        }
-        return Optional.empty();
+        return registry.getByName(guildId, name);
     }
 
     public void addApplication(String id, Application application) {
         applications.put(id, application);
+        registry.register(guildId, application);
     }
 
     public void removeApplication(String name) {
-        for (var entry : applications.entrySet()) {
-            if (entry.getKey().equalsIgnoreCase(name)) {
-                applications.remove(entry.getKey());
-                return;
-            }
-            for (String alias : entry.getValue().getAlias()) {
-                if (alias.equalsIgnoreCase(name)) {
-                    applications.remove(entry.getKey());
-                    return;
-                }
-            }
-        }
+        Optional<Application> application = getApplication(name);
+        if (application.isEmpty()) return;
+        applications.values().removeIf(a -> a == application.get());
+        registry.unregister(application.get());
+    }
+
+    /**
+     * Refresh the lookup of a application after its identifier or aliases were changed.
+     *
+     * @param application changed application
+     */
+    public void reindexApplication(Application application) {
+        registry.reindex(application);
     }
 
     public boolean hasApplication(Member member) {
@@ -130,10 +151,13 @@ public class GuildSettings {
     }
 
     public Optional<Phrase> removePhrase(int index) {
-        if (index >= phrases.size()) return Optional.empty();
-        Phrase phrase = phrases.get(index);
-        phrases.remove(index);
-        return Optional.ofNullable(phrase);
+        if (index < 0) return Optional.empty();
+        try {
+            return Optional.ofNullable(phrases.remove(index));
+        } catch (IndexOutOfBoundsException e) {
+            // removed concurrently
+            return Optional.empty();
+        }
     }
 
     public String getPhrases() {
@@ -0,0 +1,96 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import lombok.Getter;
+
+/**
+ * A single change of the configuration.
+ * <p>
+ * Records describe the new state of the changed element instead of the operation. Replaying a record more than once
+ * results in the same state, which allows to replay a journal on top of a snapshot that already contains some of the
+ * records.
+ */
+@Getter
+class JournalRecord {
+    @Expose
+    private Type type;
+    @Expose
+    private String guild;
+    @Expose
+    private int id;
+    @Expose
+    private String version;
+    @Expose
+    private int value;
+    @Expose
+    private GuildSettings settings;
+    @Expose
+    private Application application;
+    @Expose
+    private Release release;
+
+    private JournalRecord(Type type) {
+        this.type = type;
+    }
+
+    static JournalRecord currentId(int currentId) {
+        JournalRecord record = new JournalRecord(Type.CURRENT_ID);
+        record.value = currentId;
+        return record;
+    }
+
+    /**
+     * Record the settings of a guild. Applications are not part of this record.
+     */
+    static JournalRecord guild(String guildId, GuildSettings settings) {
+        JournalRecord record = new JournalRecord(Type.GUILD);
+        record.guild = guildId;
+        record.settings = settings;
+        return record;
+    }
+
+    /**
+     * Record the properties of a application. Releases are not part of this record.
+     */
+    static JournalRecord application(String guildId, Application application) {
+        JournalRecord record = new JournalRecord(Type.APPLICATION);
+        record.guild = guildId;
+        record.id = application.getId();
+        record.application = application;
+        return record;
+    }
+
+    static JournalRecord applicationDeleted(String guildId, int id) {
+        JournalRecord record = new JournalRecord(Type.APPLICATION_DELETE);
+        record.guild = guildId;
+        record.id = id;
+        return record;
+    }
+
+    static JournalRecord release(int id, String version, Release release) {
+        JournalRecord record = new JournalRecord(Type.RELEASE);
+        record.id = id;
+        record.version = version;
+        record.release = release;
+        return record;
+    }
+
+    static JournalRecord releaseDeleted(int id, String version) {
+        JournalRecord record = new JournalRecord(Type.RELEASE_DELETE);
+        record.id = id;
+        record.version = version;
+        return record;
+    }
+
+    static JournalRecord downloads(int id, String version, int downloads) {
+        JournalRecord record = new JournalRecord(Type.DOWNLOADS);
+        record.id = id;
+        record.version = version;
+        record.value = downloads;
+        return record;
+    }
+
+    enum Type {
+        CURRENT_ID, GUILD, APPLICATION, APPLICATION_DELETE, RELEASE, RELEASE_DELETE, DOWNLOADS
+    }
+}
@@ -0,0 +1,26 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import lombok.Data;
+
+/**
+ * Settings of the metrics endpoint.
+ * <p>
+ * Metrics are served on their own port, which should not be reachable from the outside.
+ */
+@Data
+public class MetricsSettings {
+    @Expose
+    private boolean enabled = true;
+    /**
+     * Address the metrics endpoint binds to. Only reachable from the same host by default. Use 0.0.0.0 in a container
+     * which is scraped from another container.
+     */
+    @Expose
+    private String host = "127.0.0.1";
+    /**
+     * Port of the metrics endpoint.
+     */
+    @Expose
+    private int port = 19051;
+}
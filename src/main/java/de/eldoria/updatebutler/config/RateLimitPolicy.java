@@ -0,0 +1,26 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * Rate limit of a route. Every client may send {@link #burst} requests at once and gains {@link #perMinute} requests
+ * per minute afterwards.
+ */
+@Data
+public class RateLimitPolicy {
+    @Expose
+    private int burst = 1;
+    @SerializedName("per_minute")
+    @Expose
+    private double perMinute = 60;
+
+    public RateLimitPolicy(int burst, double perMinute) {
+        this.burst = burst;
+        this.perMinute = perMinute;
+    }
+
+    public RateLimitPolicy() {
+    }
+}
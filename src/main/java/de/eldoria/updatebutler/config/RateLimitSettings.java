@@ -0,0 +1,28 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * Rate limits of the web api.
+ */
+@Data
+public class RateLimitSettings {
+    @Expose
+    private RateLimitPolicy check = new RateLimitPolicy(60, 60);
+    @SerializedName("check_batch")
+    @Expose
+    private RateLimitPolicy checkBatch = new RateLimitPolicy(5, 60);
+    @Expose
+    private RateLimitPolicy download = new RateLimitPolicy(5, 12);
+    @SerializedName("debug_submit")
+    @Expose
+    private RateLimitPolicy debugSubmit = new RateLimitPolicy(3, 6);
+    /**
+     * Maximum amount of clients which are tracked per route. The least recently seen clients are dropped first.
+     */
+    @SerializedName("max_clients")
+    @Expose
+    private int maxClients = 100000;
+}
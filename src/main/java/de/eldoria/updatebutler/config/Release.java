@@ -3,10 +3,18 @@ package de.eldoria.updatebutler.config;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import de.eldoria.updatebutler.util.C;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @Data
 public class Release {
@@ -26,8 +34,62 @@ public class Release {
     private String file;
     @Expose
     private String checksum;
+    /**
+     * Name of the file for downloads. Older releases use the name of {@link #file}.
+     */
+    @SerializedName("file_name")
     @Expose
-    private int downloads;
+    private String fileName;
+    /**
+     * Gzip compressed variant of the file. Only present if it is notably smaller than the file. Built in the background
+     * after the release was added.
+     */
+    @Expose
+    private volatile ReleaseVariant gzip;
+    /**
+     * Deltas to the file of this release by the version of the release they start from. Built in the background after
+     * the release was added.
+     */
+    @Expose
+    private ConcurrentHashMap<String, ReleaseVariant> deltas = new ConcurrentHashMap<>();
+    @Expose
+    private volatile int downloads;
+    /**
+     * Downloads counted since the release was loaded. Merged into {@link #downloads} by {@link #flushDownloads()}.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final transient LongAdder downloadCounter = new LongAdder();
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient long flushedDownloads;
+    /**
+     * Parsed publish date. Parsed when the release is created or read.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient LocalDateTime publishedTime;
+    /**
+     * Publish date as epoch milliseconds.
+     */
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient long timestamp;
+    /**
+     * Parsed version or null if the version does not follow a known scheme. Parsed when the release is created or
+     * read.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Version parsedVersion;
+
+    /**
+     * Constructor for gson.
+     */
+    private Release() {
+    }
 
     public Release(String version, String title, String patchnotes, boolean devBuild, String published, String file, String checksum) {
         this.version = version;
@@ -37,13 +99,79 @@ public class Release {
         this.published = published;
         this.file = file;
         this.checksum = checksum;
+        parse();
+    }
+
+    /**
+     * Parse the publish date and the version. Called after the release was created or read by gson.
+     */
+    void parse() {
+        parsePublished();
+        parsedVersion = Version.parse(version);
+    }
+
+    private void parsePublished() {
+        publishedTime = LocalDateTime.parse(published, C.DATE_FORMAT);
+        timestamp = publishedTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     public LocalDateTime getPublished() {
-        return LocalDateTime.parse(published, C.DATE_FORMAT);
+        return publishedTime;
+    }
+
+    /**
+     * Get the parsed version of this release.
+     *
+     * @return parsed version or empty if the version does not follow a known scheme
+     */
+    public Optional<Version> getParsedVersion() {
+        return Optional.ofNullable(parsedVersion);
+    }
+
+    public String getFileName() {
+        return fileName != null ? fileName : Paths.get(file).getFileName().toString();
+    }
+
+    /**
+     * Get the delta from the file of another release to the file of this release.
+     *
+     * @param version version of the release the delta starts from
+     *
+     * @return delta if one was built
+     */
+    public Optional<ReleaseVariant> getDelta(String version) {
+        return Optional.ofNullable(deltas.get(version));
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+        parsedVersion = Version.parse(version);
+    }
+
+    public void setPublished(String published) {
+        this.published = published;
+        parsePublished();
     }
 
     public void downloaded() {
-        downloads++;
+        downloadCounter.increment();
+    }
+
+    public int getDownloads() {
+        return downloads + (int) (downloadCounter.sum() - flushedDownloads);
+    }
+
+    /**
+     * Merge the downloads counted since the last flush into the persisted download count.
+     *
+     * @return true if the download count changed
+     */
+    public synchronized boolean flushDownloads() {
+        long counted = downloadCounter.sum();
+        long delta = counted - flushedDownloads;
+        if (delta == 0) return false;
+        downloads += (int) delta;
+        flushedDownloads = counted;
+        return true;
     }
 }
@@ -0,0 +1,35 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Parses the publish date and the version of a release once after it was read.
+ */
+class ReleaseAdapterFactory implements TypeAdapterFactory {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != Release.class) return null;
+        TypeAdapter<Release> delegate = gson.getDelegateAdapter(this, TypeToken.get(Release.class));
+        return (TypeAdapter<T>) new TypeAdapter<Release>() {
+            @Override
+            public void write(JsonWriter out, Release value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public Release read(JsonReader in) throws IOException {
+                Release release = delegate.read(in);
+                if (release != null) release.parse();
+                return release;
+            }
+        };
+    }
+}
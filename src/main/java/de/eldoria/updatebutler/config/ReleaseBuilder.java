@@ -1,20 +1,15 @@
 package de.eldoria.updatebutler.config;
 
-import com.google.common.hash.Hashing;
+import de.eldoria.updatebutler.artifacts.ArtifactStore;
+import de.eldoria.updatebutler.artifacts.ArtifactVariants;
 import de.eldoria.updatebutler.util.C;
-import de.eldoria.updatebutler.util.FileHelper;
-import de.eldoria.updatebutler.util.FileUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.regex.Matcher;
 
@@ -23,54 +18,77 @@ public final class ReleaseBuilder {
     private ReleaseBuilder() {
     }
 
-    public static Optional<Release> buildRelease(Application application, String version, String name, String descr, String url, boolean dev) {
-        Optional<File> optFile = FileHelper.getFileFromURL(url);
-
-        if (optFile.isEmpty()) {
-            log.error("Failed to download file.");
-            return Optional.empty();
-        }
-
-        File source = optFile.get();
-
-        boolean exists = source.exists();
-
-        Path resources;
+    /**
+     * Download the file of a release into the artifact store and build the release.
+     *
+     * @param configuration configuration with the artifact store
+     * @param application   application of the release
+     * @param version       version of the release
+     * @param name          title of the release
+     * @param descr         patch notes of the release
+     * @param url           url of the release file
+     * @param dev           true if the release is a dev build
+     *
+     * @return release or an empty optional if the file could not be downloaded
+     */
+    public static Optional<Release> buildRelease(Configuration configuration, Application application, String version,
+                                                 String name, String descr, String url, boolean dev) {
+        String path;
         try {
-            resources = Files.createDirectories(Paths.get(FileUtil.home(), "resources",
-                    Integer.toString(application.getId()),
-                    version));
-        } catch (IOException e) {
-            log.error("Could not create version file");
+            path = new URI(url).getPath();
+        } catch (URISyntaxException e) {
+            log.info("Could not parse url {}", url);
             return Optional.empty();
         }
-
-        Matcher matcher = C.FILE_NAME.matcher(source.getName());
+        Matcher matcher = C.FILE_NAME.matcher(path == null ? "" : path);
         if (!matcher.find()) {
-            log.info("Could not parse file name {}", source.getName());
+            log.info("Could not parse file name {}", path);
             return Optional.empty();
         }
 
+        ArtifactStore store = configuration.getArtifactStore();
         String hash;
         try {
-            hash = Hashing.sha256().hashBytes(FileUtils.readFileToByteArray(source)).toString();
+            hash = store.download(url, configuration.getArtifacts().getMaxSize());
         } catch (IOException e) {
-            log.error("Failed to create hash from file.", e);
+            log.error("Failed to download file.", e);
             return Optional.empty();
         }
 
-        Path targetPath = Paths.get(resources.toString(),
-                application.getIdentifier() + "." + matcher.group(2));
-        try {
-            Files.copy(source.toPath(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            log.warn("Failed to save file.", e);
-            return Optional.empty();
-        }
-        String publishedDate = C.DATE_FORMAT.format(LocalDateTime.now().atZone(ZoneId.of("UCT")));
-
         Release release = new Release(version, name, descr, dev,
-                C.DATE_FORMAT.format(LocalDateTime.now()), targetPath.toString(), hash);
+                C.DATE_FORMAT.format(LocalDateTime.now()), store.path(hash).toString(), hash);
+        release.setFileName(application.getIdentifier() + "." + matcher.group(2));
         return Optional.of(release);
     }
+
+    /**
+     * Build the gzip variant of the release file and the deltas from previous releases.
+     *
+     * @param configuration configuration with the artifact store
+     * @param release       release to build the variants of
+     * @param previous      releases the deltas start from
+     *
+     * @return true if a variant was built
+     */
+    static boolean buildVariants(Configuration configuration, Release release, Collection<Release> previous) {
+        ArtifactStore store = configuration.getArtifactStore();
+        ArtifactSettings settings = configuration.getArtifacts();
+        boolean built = false;
+        if (settings.isGzipVariants()) {
+            Optional<ReleaseVariant> gzip = ArtifactVariants.gzip(store, release.getChecksum(), settings);
+            gzip.ifPresent(release::setGzip);
+            built = gzip.isPresent();
+        }
+        if (!settings.isDeltas()) return built;
+        for (Release source : previous) {
+            if (release.getChecksum().equals(source.getChecksum())
+                    || source.getVersion().equals(release.getVersion())) {
+                continue;
+            }
+            Optional<ReleaseVariant> delta = ArtifactVariants.delta(store, source, release, settings);
+            delta.ifPresent(value -> release.getDeltas().put(source.getVersion(), value));
+            built |= delta.isPresent();
+        }
+        return built;
+    }
 }
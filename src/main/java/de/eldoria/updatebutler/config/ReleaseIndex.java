@@ -0,0 +1,118 @@
+package de.eldoria.updatebutler.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable snapshot of the releases of a application, sorted from the newest to the oldest release and indexed by
+ * their normalized version.
+ * <p>
+ * A new snapshot is created every time a release is added or deleted. Consumers can compare snapshots by identity to
+ * detect changes.
+ */
+public final class ReleaseIndex {
+    private static final Comparator<Release> NEWEST_FIRST = Comparator.comparingLong(Release::getTimestamp)
+            .reversed()
+            .thenComparing(Release::getVersion, Comparator.nullsLast(Comparator.naturalOrder()));
+    private final List<Release> all;
+    private final List<Release> stable;
+    private final Map<String, Release> byVersion;
+
+    private ReleaseIndex(List<Release> all, List<Release> stable, Map<String, Release> byVersion) {
+        this.all = all;
+        this.stable = stable;
+        this.byVersion = byVersion;
+    }
+
+    /**
+     * Create a snapshot of the releases of a application.
+     *
+     * @param releases releases of a application by their key
+     *
+     * @return new snapshot
+     */
+    public static ReleaseIndex of(Map<String, Release> releases) {
+        List<Release> all = new ArrayList<>(releases.values());
+        all.sort(NEWEST_FIRST);
+        List<Release> stable = new ArrayList<>(all.size());
+        for (Release release : all) {
+            if (!release.isDevBuild()) stable.add(release);
+        }
+        Map<String, Release> byVersion = new HashMap<>();
+        for (Map.Entry<String, Release> entry : releases.entrySet()) {
+            byVersion.putIfAbsent(normalize(entry.getKey()), entry.getValue());
+        }
+        return new ReleaseIndex(Collections.unmodifiableList(all), Collections.unmodifiableList(stable), byVersion);
+    }
+
+    /**
+     * Normalize a version for lookups. Versions are case insensitive and underscores are treated as spaces, because
+     * spaces are replaced by underscores in download links.
+     *
+     * @param version version to normalize
+     *
+     * @return normalized version
+     */
+    public static String normalize(String version) {
+        return version.replace('_', ' ').trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find a release by its version.
+     *
+     * @param version version of the release. Will be normalized
+     *
+     * @return release if a release with this version exists
+     */
+    public Optional<Release> find(String version) {
+        if (version == null) return Optional.empty();
+        return Optional.ofNullable(byVersion.get(normalize(version)));
+    }
+
+    /**
+     * Get the latest release.
+     *
+     * @param dev true if dev builds should be included
+     *
+     * @return latest release if the application has any matching release
+     */
+    public Optional<Release> get(boolean dev) {
+        List<Release> releases = getReleases(dev);
+        return releases.isEmpty() ? Optional.empty() : Optional.of(releases.get(0));
+    }
+
+    /**
+     * Get the latest release including dev builds.
+     *
+     * @return latest release
+     */
+    public Optional<Release> getLatest() {
+        return get(true);
+    }
+
+    /**
+     * Get the latest stable release.
+     *
+     * @return latest stable release
+     */
+    public Optional<Release> getLatestStable() {
+        return get(false);
+    }
+
+    /**
+     * Get the releases sorted from the newest to the oldest release.
+     *
+     * @param dev true if dev builds should be included
+     *
+     * @return unmodifiable list of releases
+     */
+    public List<Release> getReleases(boolean dev) {
+        return dev ? all : stable;
+    }
+}
@@ -0,0 +1,15 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import lombok.Data;
+
+/**
+ * A file in the artifact store which is derived from the file of a release, like a compressed copy or a delta.
+ */
+@Data
+public class ReleaseVariant {
+    @Expose
+    private final String checksum;
+    @Expose
+    private final long size;
+}
@@ -0,0 +1,32 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * Concurrency limit of a route class. Requests above the limit wait in a queue and are rejected with 503 if the queue
+ * is full or they waited longer than {@link #maxWaitSeconds}.
+ */
+@Data
+public class RouteLimitSettings {
+    @Expose
+    private int concurrency = 8;
+    @Expose
+    private int queue = 64;
+    /**
+     * Seconds a queued request waits for a permit before it is rejected. 0 waits without a limit.
+     */
+    @SerializedName("max_wait_seconds")
+    @Expose
+    private int maxWaitSeconds = 10;
+
+    public RouteLimitSettings(int concurrency, int queue, int maxWaitSeconds) {
+        this.concurrency = concurrency;
+        this.queue = queue;
+        this.maxWaitSeconds = maxWaitSeconds;
+    }
+
+    public RouteLimitSettings() {
+    }
+}
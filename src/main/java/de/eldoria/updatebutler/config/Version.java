@@ -0,0 +1,169 @@
+package de.eldoria.updatebutler.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A parsed version.
+ * <p>
+ * Versions follow semantic versioning with a few relaxations which are common for plugins: a leading {@code v}, any
+ * amount of numeric components ({@code 1.2} equals {@code 1.2.0}) and qualifiers like {@code -SNAPSHOT} or
+ * {@code -dev}, which are ordered before the release. Build metadata after a {@code +} is ignored.
+ */
+public final class Version implements Comparable<Version> {
+    private static final String[] NO_QUALIFIERS = new String[0];
+    /**
+     * Rank of well known qualifiers. Unknown qualifiers are ranked between beta and release candidates.
+     */
+    private static final Map<String, Integer> QUALIFIER_RANK = Map.ofEntries(
+            Map.entry("snapshot", 0), Map.entry("dev", 0), Map.entry("nightly", 0),
+            Map.entry("alpha", 1), Map.entry("a", 1),
+            Map.entry("beta", 2), Map.entry("b", 2),
+            Map.entry("pre", 4), Map.entry("rc", 4), Map.entry("cr", 4));
+    private static final int UNKNOWN_RANK = 3;
+    private final long[] numbers;
+    private final String[] qualifiers;
+
+    private Version(long[] numbers, String[] qualifiers) {
+        this.numbers = numbers;
+        this.qualifiers = qualifiers;
+    }
+
+    /**
+     * Parse a version string.
+     *
+     * @param version version string
+     *
+     * @return parsed version or null if the string does not start with a number
+     */
+    public static Version parse(String version) {
+        if (version == null) return null;
+        String value = version.trim();
+        if (value.startsWith("v") || value.startsWith("V")) value = value.substring(1);
+        int meta = value.indexOf('+');
+        if (meta != -1) value = value.substring(0, meta);
+
+        List<Long> numbers = new ArrayList<>();
+        int index = 0;
+        while (index < value.length()) {
+            int start = index;
+            while (index < value.length() && Character.isDigit(value.charAt(index))) index++;
+            if (start == index) break;
+            try {
+                numbers.add(Long.parseLong(value.substring(start, index)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (index + 1 < value.length() && value.charAt(index) == '.' && Character.isDigit(value.charAt(index + 1))) {
+                index++;
+                continue;
+            }
+            break;
+        }
+        if (numbers.isEmpty()) return null;
+
+        long[] parsed = new long[numbers.size()];
+        for (int i = 0; i < parsed.length; i++) parsed[i] = numbers.get(i);
+
+        return new Version(parsed, parseQualifiers(value.substring(index)));
+    }
+
+    private static String[] parseQualifiers(String qualifier) {
+        List<String> result = new ArrayList<>();
+        for (String part : qualifier.toLowerCase(Locale.ROOT).split("[.\\-_ ]+")) {
+            if (part.isEmpty()) continue;
+            result.add(part);
+        }
+        // qualifiers which mark a release
+        if (result.size() == 1 && (result.get(0).equals("release") || result.get(0).equals("final")
+                || result.get(0).equals("ga"))) {
+            return NO_QUALIFIERS;
+        }
+        return result.toArray(NO_QUALIFIERS);
+    }
+
+    /**
+     * Check if this version is a pre release like a snapshot or a dev build.
+     *
+     * @return true if the version has a qualifier
+     */
+    public boolean isPreRelease() {
+        return qualifiers.length != 0;
+    }
+
+    public boolean isNewerThan(Version other) {
+        return compareTo(other) > 0;
+    }
+
+    @Override
+    public int compareTo(Version other) {
+        int length = Math.max(numbers.length, other.numbers.length);
+        for (int i = 0; i < length; i++) {
+            long a = i < numbers.length ? numbers[i] : 0;
+            long b = i < other.numbers.length ? other.numbers[i] : 0;
+            if (a != b) return Long.compare(a, b);
+        }
+        // a release is newer than all of its pre releases
+        if (qualifiers.length == 0 && other.qualifiers.length == 0) return 0;
+        if (qualifiers.length == 0) return 1;
+        if (other.qualifiers.length == 0) return -1;
+        int shared = Math.min(qualifiers.length, other.qualifiers.length);
+        for (int i = 0; i < shared; i++) {
+            int result = compareQualifier(qualifiers[i], other.qualifiers[i]);
+            if (result != 0) return result;
+        }
+        return Integer.compare(qualifiers.length, other.qualifiers.length);
+    }
+
+    private static int compareQualifier(String a, String b) {
+        boolean numericA = isNumeric(a);
+        boolean numericB = isNumeric(b);
+        if (numericA && numericB) {
+            int result = Integer.compare(a.length(), b.length());
+            return result != 0 ? result : a.compareTo(b);
+        }
+        // numeric identifiers have a lower precedence than alphanumeric identifiers
+        if (numericA) return -1;
+        if (numericB) return 1;
+        int result = Integer.compare(QUALIFIER_RANK.getOrDefault(a, UNKNOWN_RANK), QUALIFIER_RANK.getOrDefault(b, UNKNOWN_RANK));
+        return result != 0 ? result : a.compareTo(b);
+    }
+
+    private static boolean isNumeric(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Version)) return false;
+        return compareTo((Version) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        // trailing zeros do not change the version
+        int length = numbers.length;
+        while (length > 0 && numbers[length - 1] == 0) length--;
+        return 31 * Arrays.hashCode(Arrays.copyOf(numbers, length)) + Arrays.hashCode(qualifiers);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < numbers.length; i++) {
+            if (i != 0) builder.append('.');
+            builder.append(numbers[i]);
+        }
+        if (qualifiers.length != 0) {
+            builder.append('-').append(String.join(".", qualifiers));
+        }
+        return builder.toString();
+    }
+}
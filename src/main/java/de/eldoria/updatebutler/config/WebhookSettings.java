@@ -0,0 +1,31 @@
+package de.eldoria.updatebutler.config;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * Settings of the queue which builds releases from github webhooks.
+ */
+@Data
+public class WebhookSettings {
+    @Expose
+    private int workers = 2;
+    /**
+     * Maximum amount of pending webhooks. Further webhooks are rejected with 503.
+     */
+    @Expose
+    private int queue = 100;
+    @SerializedName("max_attempts")
+    @Expose
+    private int maxAttempts = 6;
+    /**
+     * Delay before the first retry. The delay doubles with every attempt.
+     */
+    @SerializedName("retry_delay_seconds")
+    @Expose
+    private int retryDelaySeconds = 30;
+    @SerializedName("max_retry_delay_seconds")
+    @Expose
+    private int maxRetryDelaySeconds = 1800;
+}
@@ -8,6 +8,9 @@ import de.eldoria.updatebutler.api.debug.data.EntryData;
 import de.eldoria.updatebutler.api.debug.data.LogData;
 import de.eldoria.updatebutler.api.debug.data.PluginMetaData;
 import de.eldoria.updatebutler.api.debug.data.ServerMetaData;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -26,12 +29,33 @@ public class DebugData {
 
     private final DataSource source;
     private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final Histogram submitDuration = duration("submit");
+    private final Histogram loadDuration = duration("load");
+    private final Counter submitFailures = failures("submit");
 
     public DebugData(DataSource source) {
         this.source = source;
     }
 
+    private static Histogram duration(String operation) {
+        return Metrics.registry().histogram("updatebutler_debug_db_duration_seconds",
+                "Time spent in database operations of debugs.", "operation", operation);
+    }
+
+    private static Counter failures(String operation) {
+        return Metrics.registry().counter("updatebutler_debug_db_failures_total",
+                "Database operations of debugs which failed.", "operation", operation);
+    }
+
     public Optional<DebugResponse> submitDebug(DebugPayload payload) {
+        long start = System.nanoTime();
+        Optional<DebugResponse> response = insertDebug(payload);
+        submitDuration.recordSince(start);
+        if (response.isEmpty()) submitFailures.inc();
+        return response;
+    }
+
+    private Optional<DebugResponse> insertDebug(DebugPayload payload) {
         int id;
         String hash;
         String deletionHash;
@@ -121,6 +145,13 @@ public class DebugData {
     }
 
     public Optional<DebugPayload> loadDebug(Integer id) {
+        long start = System.nanoTime();
+        Optional<DebugPayload> payload = selectDebug(id);
+        loadDuration.recordSince(start);
+        return payload;
+    }
+
+    private Optional<DebugPayload> selectDebug(Integer id) {
         PluginMetaData pluginMeta;
         LogData latestLog;
         ServerMetaData serverMeta;
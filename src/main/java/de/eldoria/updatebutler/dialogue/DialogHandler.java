@@ -41,18 +41,18 @@ public class DialogHandler {
         if (dialog != null) {
             if (dialog.invoke(guild, channel, member, message)) {
                 removeDialog(guild, channel, member);
-                configuration.save();
+                configuration.guildChanged(guild.getId());
             }
             return true;
         }
         return false;
     }
 
-    public boolean dialogInProgress(Guild guild, TextChannel channel, Member member) {
+    public synchronized boolean dialogInProgress(Guild guild, TextChannel channel, Member member) {
         return getDialog(guild, channel, member) != null;
     }
 
-    public boolean removeDialog(Guild guild, TextChannel channel, Member member) {
+    public synchronized boolean removeDialog(Guild guild, TextChannel channel, Member member) {
         var guildDialogs = dialogs.get(guild.getIdLong());
         if (guildDialogs == null) return false;
         var channelDialogs = guildDialogs.get(channel.getIdLong());
@@ -72,7 +72,7 @@ public class DialogHandler {
         return true;
     }
 
-    public void startDialog(Guild guild, TextChannel channel, Member member, String startMessage, Dialog dialog) {
+    public synchronized void startDialog(Guild guild, TextChannel channel, Member member, String startMessage, Dialog dialog) {
         if (dialogInProgress(guild, channel, member)) {
             channel.sendMessage("A dialog is already in progress. Finish dialog or type \"exit\" to end the current dialog.").queue();
             return;
@@ -85,7 +85,7 @@ public class DialogHandler {
                 .put(member.getIdLong(), dialog);
     }
 
-    public Dialog getDialog(Guild guild, TextChannel channel, Member member) {
+    public synchronized Dialog getDialog(Guild guild, TextChannel channel, Member member) {
         var guildDialogs = dialogs.get(guild.getIdLong());
         if (guildDialogs == null) return null;
         var channelDialogs = guildDialogs.get(channel.getIdLong());
@@ -15,6 +15,9 @@ import de.eldoria.updatebutler.config.phrase.PlainPhrase;
 import de.eldoria.updatebutler.config.phrase.RegexPhrase;
 import de.eldoria.updatebutler.dialogue.Dialog;
 import de.eldoria.updatebutler.dialogue.DialogHandler;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
 import de.eldoria.updatebutler.util.ArgumentParser;
 import de.eldoria.updatebutler.util.C;
 import de.eldoria.updatebutler.util.TextFormatting;
@@ -60,11 +63,20 @@ public class CommandListener extends ListenerAdapter {
     private final String[] ownerCommands = {"setPrefix", "grant", "revoke", "createApp", "createCommand", "removeCommand", "createPhrase", "removePhrase", "listPhrase", "setTimeChannel"};
     private final String[] appCommands = {"deleteApp", "grantAccess", "revokeAccess", "deployUpdate", "deleteUpdate", "setName", "setDescr", "setAlias", "setChannel"};
     private final DialogHandler dialogHandler;
+    private final Histogram receivedDuration;
+    private final Histogram updatedDuration;
 
     public CommandListener(Configuration configuration, ShardManager shardManager) {
         this.configuration = configuration;
         this.parser = new ArgumentParser(shardManager);
         dialogHandler = new DialogHandler(configuration);
+        MetricsRegistry metrics = Metrics.registry();
+        receivedDuration = metrics.histogram("updatebutler_discord_message_duration_seconds",
+                "Time spent handling a guild message.", "event", "received");
+        updatedDuration = metrics.histogram("updatebutler_discord_message_duration_seconds",
+                "Time spent handling a guild message.", "event", "updated");
+        metrics.gauge("updatebutler_discord_gateway_ping_seconds", "Average gateway ping of all shards.",
+                () -> shardManager.getAverageGatewayPing() / 1000.0);
     }
 
     public static boolean isInArray(String s, String... sA) {
@@ -76,12 +88,16 @@ public class CommandListener extends ListenerAdapter {
 
     @Override
     public void onGuildMessageUpdate(@Nonnull GuildMessageUpdateEvent event) {
+        long start = System.nanoTime();
         handleMessage(event.getMember(), event.getChannel(), event.getGuild(), event.getMessage(), event);
+        updatedDuration.recordSince(start);
     }
 
     @Override
     public void onGuildMessageReceived(@Nonnull GuildMessageReceivedEvent event) {
+        long start = System.nanoTime();
         handleMessage(event.getMember(), event.getChannel(), event.getGuild(), event.getMessage(), event);
+        receivedDuration.recordSince(start);
     }
 
     public void handleMessage(Member member, TextChannel channel, Guild guild, Message message, GenericGuildMessageEvent event) {
@@ -248,7 +264,7 @@ public class CommandListener extends ListenerAdapter {
             }
 
             if ("setAlias".equalsIgnoreCase(label)) {
-                setAlias(channel, args, application);
+                setAlias(channel, guildSettings, args, application);
             }
 
             if ("setChannel".equalsIgnoreCase(label)) {
@@ -711,7 +727,7 @@ public class CommandListener extends ListenerAdapter {
 
         guildSettings.setPrefix(args[0]);
         channel.sendMessage("Prefix set to **" + args[0] + "**").queue();
-        configuration.save();
+        configuration.guildChanged(guildSettings.getGuildId());
     }
 
     private void grant(Member member, TextChannel channel, Guild guild, GuildSettings guildSettings, String[] args) {
@@ -729,7 +745,7 @@ public class CommandListener extends ListenerAdapter {
         String names = guildMembers.stream().map(m -> "**" + m.getEffectiveName() + "**").collect(Collectors.joining(", "));
 
         channel.sendMessage("Granted bot usage to: " + names).queue();
-        configuration.save();
+        configuration.guildChanged(guildSettings.getGuildId());
     }
 
     private void revoke(Member member, TextChannel channel, Guild guild, GuildSettings guildSettings, String[] args) {
@@ -748,7 +764,7 @@ public class CommandListener extends ListenerAdapter {
         String names = guildMembers.stream().map(m -> "**" + m.getEffectiveName() + "**").collect(Collectors.joining(", "));
 
         channel.sendMessage("Revoked bot usage from: " + names).queue();
-        configuration.save();
+        configuration.guildChanged(guildSettings.getGuildId());
     }
 
     private void createApp(Member member, TextChannel channel, Guild guild, GuildSettings guildSettings) {
@@ -817,10 +833,10 @@ public class CommandListener extends ListenerAdapter {
                             channel.sendMessage("No update channel set.").queue();
                         }
                         int nextAppId = configuration.getNextAppId();
-                        guildSettings.addApplication(Integer.toString(nextAppId),
-                                new Application(nextAppId, id, displayName, description, alias, member.getIdLong(), updateChannel));
+                        Application application = new Application(nextAppId, id, displayName, description, alias, member.getIdLong(), updateChannel);
+                        guildSettings.addApplication(Integer.toString(nextAppId), application);
+                        configuration.applicationChanged(application);
                         channel.sendMessage("Application registered with id " + nextAppId).queue();
-                        configuration.save();
                         return true;
                     }
                 });
@@ -922,7 +938,8 @@ public class CommandListener extends ListenerAdapter {
 
                         Message.Attachment attachment = message.getAttachments().get(0);
 
-                        Optional<Release> buildRelease = ReleaseBuilder.buildRelease(application, version, title, description, message.getAttachments().get(0).getUrl(), devBuild);
+                        Optional<Release> buildRelease = ReleaseBuilder.buildRelease(configuration, application, version, title,
+                                description, message.getAttachments().get(0).getUrl(), devBuild);
 
                         if (buildRelease.isEmpty()) {
                             channel.sendMessage("An error occured while creating the release.").queue();
@@ -965,13 +982,13 @@ public class CommandListener extends ListenerAdapter {
 
                         if ("confirm".equalsIgnoreCase(content)) {
                             guildSettings.removeApplication(application.getIdentifier());
+                            configuration.applicationDeleted(application);
                             channel.sendMessage("Application **" + this.application.getDisplayName() + "** selected.\n"
                                     + "Please confirm by typing \"confirm\"").queue();
                             return true;
                         }
                         channel.sendMessage("Application **" + this.application.getDisplayName() + "** selected.\n"
                                 + "Please confirm by typing \"confirm\"").queue();
-                        configuration.save();
                         return false;
                     }
                 });
@@ -1007,7 +1024,7 @@ public class CommandListener extends ListenerAdapter {
 
                         if (user != null) {
                             application.addOwner(user);
-                            configuration.save();
+                            configuration.applicationChanged(application);
                             channel.sendMessage("User " + user.getAsTag() + " added."
                                     + "\nWrite another name to add or \"done\" to add the user.").queue();
                         } else {
@@ -1047,6 +1064,7 @@ public class CommandListener extends ListenerAdapter {
 
                         if (user != null) {
                             application.removeOwner(user);
+                            configuration.applicationChanged(application);
                             channel.sendMessage("User " + user.getAsTag() + " removed."
                                     + "\nWrite another name to add or \"done\" to add the user.").queue();
                         } else {
@@ -1104,7 +1122,7 @@ public class CommandListener extends ListenerAdapter {
                         }
 
                         if ("confirm".equalsIgnoreCase(content)) {
-                            application.deleteRelease(release.getVersion());
+                            configuration.deleteRelease(application, release.getVersion());
                             channel.sendMessage("Removed version **" + release.getVersion() + "**.").queue();
                             return true;
                         }
@@ -1115,7 +1133,6 @@ public class CommandListener extends ListenerAdapter {
 
                         channel.sendMessage("Please write **\"confirm\"** to delete the version **"
                                 + release.getVersion() + "** or **\"cancel\"** to cancel the deletion.").queue();
-                        configuration.save();
                         return false;
                     }
                 });
@@ -1129,7 +1146,7 @@ public class CommandListener extends ListenerAdapter {
 
         application.setDisplayName(String.join(" ", ArgumentParser.getMessage(args, 1)));
         channel.sendMessage("Changed name to " + application.getDisplayName() + ".").queue();
-        configuration.save();
+        configuration.applicationChanged(application);
     }
 
     private void setDescription(TextChannel channel, String[] args, Application application) {
@@ -1140,18 +1157,19 @@ public class CommandListener extends ListenerAdapter {
 
         application.setDescription(String.join(" ", ArgumentParser.getMessage(args, 1)));
         channel.sendMessage("Description set to " + application.getDescription() + ".").queue();
-        configuration.save();
+        configuration.applicationChanged(application);
     }
 
-    private void setAlias(TextChannel channel, String[] args, Application application) {
+    private void setAlias(TextChannel channel, GuildSettings guildSettings, String[] args, Application application) {
         if (args.length == 1) {
             channel.sendMessage("Please provide one or more aliases.").queue();
             return;
         }
 
         application.setAlias(Arrays.copyOfRange(args, 1, args.length - 1));
+        guildSettings.reindexApplication(application);
         channel.sendMessage("Aliases set to " + String.join(", ", application.getAlias()) + ".").queue();
-        configuration.save();
+        configuration.applicationChanged(application);
     }
 
     private void setChannel(TextChannel channel, GenericGuildMessageEvent event, String[] args, Application
@@ -1164,6 +1182,7 @@ public class CommandListener extends ListenerAdapter {
         if ("none".equalsIgnoreCase(args[1])) {
             application.setChannel(null);
             channel.sendMessage("Removed update channel.").queue();
+            configuration.applicationChanged(application);
             return;
         }
 
@@ -1175,7 +1194,7 @@ public class CommandListener extends ListenerAdapter {
 
         application.setChannel(textChannel.get().getIdLong());
         channel.sendMessage("Set channel to " + textChannel.get().getAsMention()).queue();
-        configuration.save();
+        configuration.applicationChanged(application);
     }
 
     private boolean isCommand(String receivedMessage, String[] args, GuildSettings settings, Event event) {
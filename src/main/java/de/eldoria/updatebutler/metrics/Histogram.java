@@ -0,0 +1,98 @@
+package de.eldoria.updatebutler.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log linear buckets.
+ * <p>
+ * Every power of two between 1 µs and 137 s is split into four buckets, which limits the relative error to 25 %. The
+ * bucket of a value is computed from its leading zeros, so recording does not search and does not allocate.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Exponent of the smallest tracked power of two. 2^10 ns is roughly 1 µs.
+     */
+    private static final int MIN_EXPONENT = 10;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = 1 + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+    private static final long[] UPPER_BOUNDS = new long[BUCKETS];
+
+    static {
+        UPPER_BOUNDS[0] = 1L << MIN_EXPONENT;
+        for (int i = 1; i < BUCKETS; i++) {
+            int exponent = MIN_EXPONENT + (i - 1) / SUB_BUCKETS;
+            int sub = (i - 1) % SUB_BUCKETS;
+            UPPER_BOUNDS[i] = (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS);
+        }
+    }
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record the duration since a start time.
+     *
+     * @param startNanos start time from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        count.increment();
+        sum.add(nanos);
+        int index = index(nanos);
+        // larger values are only part of the +Inf bucket
+        if (index < BUCKETS) {
+            buckets[index].increment();
+        }
+    }
+
+    static int index(long nanos) {
+        if (nanos <= 1L << MIN_EXPONENT) return 0;
+        // upper bounds are inclusive
+        long value = nanos - 1;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    void write(StringBuilder out, String name, String labels) {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{").append(separator).append("le=\"")
+                    .append(toSeconds(UPPER_BOUNDS[i])).append("\"} ").append(cumulative).append('\n');
+        }
+        long total = count.sum();
+        out.append(name).append("_bucket{").append(separator).append("le=\"+Inf\"} ").append(total).append('\n');
+        out.append(name).append("_sum").append(MetricsRegistry.braces(labels)).append(' ')
+                .append(toSeconds(sum.sum())).append('\n');
+        out.append(name).append("_count").append(MetricsRegistry.braces(labels)).append(' ').append(total).append('\n');
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
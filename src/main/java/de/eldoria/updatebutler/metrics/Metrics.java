@@ -0,0 +1,17 @@
+package de.eldoria.updatebutler.metrics;
+
+/**
+ * Holder of the metrics registry of the application.
+ * <p>
+ * Metrics should be looked up once and stored in a field. Updating a metric only increments a striped counter.
+ */
+public final class Metrics {
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    private Metrics() {
+    }
+
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+}
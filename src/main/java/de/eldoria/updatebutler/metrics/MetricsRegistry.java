@@ -0,0 +1,119 @@
+package de.eldoria.updatebutler.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of metrics which renders them in the prometheus text format.
+ * <p>
+ * Metrics are registered once and afterwards updated without touching the registry.
+ */
+public class MetricsRegistry {
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Get or create a counter.
+     *
+     * @param name   name of the metric
+     * @param help   description of the metric
+     * @param labels label names and values in alternating order
+     *
+     * @return counter
+     */
+    public synchronized Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").metrics.computeIfAbsent(labels(labels), k -> new Counter());
+    }
+
+    /**
+     * Get or create a latency histogram. The name should end with {@code _seconds}.
+     *
+     * @param name   name of the metric
+     * @param help   description of the metric
+     * @param labels label names and values in alternating order
+     *
+     * @return histogram
+     */
+    public synchronized Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").metrics.computeIfAbsent(labels(labels), k -> new Histogram());
+    }
+
+    /**
+     * Register a gauge. A previously registered gauge with the same name and labels is replaced.
+     *
+     * @param name   name of the metric
+     * @param help   description of the metric
+     * @param value  supplier of the current value
+     * @param labels label names and values in alternating order
+     */
+    public synchronized void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").metrics.put(labels(labels), value);
+    }
+
+    /**
+     * Render all metrics.
+     *
+     * @return metrics in the prometheus text format
+     */
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                Object value = metric.getValue();
+                if (value instanceof Histogram) {
+                    ((Histogram) value).write(out, name, metric.getKey());
+                    continue;
+                }
+                out.append(name).append(braces(metric.getKey())).append(' ');
+                if (value instanceof Counter) {
+                    out.append(((Counter) value).get());
+                } else {
+                    out.append(((DoubleSupplier) value).getAsDouble());
+                }
+                out.append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, k -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        return family;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels have to be passed as name value pairs.");
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i != 0) builder.append(',');
+            builder.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return builder.toString();
+    }
+
+    static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static final class Family {
+        private final String help;
+        private final String type;
+        private final Map<String, Object> metrics = new LinkedHashMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
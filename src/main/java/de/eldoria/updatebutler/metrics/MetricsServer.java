@@ -0,0 +1,69 @@
+package de.eldoria.updatebutler.metrics;
+
+import com.google.api.client.http.HttpStatusCodes;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the metrics on a separate port.
+ * <p>
+ * The server is independent from the web api, so scrapes are neither rate limited nor exposed on the public port.
+ */
+@Slf4j
+public class MetricsServer {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private final MetricsRegistry registry;
+    private HttpServer server;
+
+    public MetricsServer(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param host host to bind
+     * @param port port to bind
+     *
+     * @throws IOException when the port could not be bound
+     */
+    public void start(String host, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Metrics server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        log.info("Metrics available at http://{}:{}/metrics", host, port);
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(HttpStatusCodes.STATUS_CODE_METHOD_NOT_ALLOWED, -1);
+                return;
+            }
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(HttpStatusCodes.STATUS_CODE_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
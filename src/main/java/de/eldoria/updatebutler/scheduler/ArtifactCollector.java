@@ -0,0 +1,38 @@
+package de.eldoria.updatebutler.scheduler;
+
+import de.eldoria.updatebutler.artifacts.ArtifactStore;
+import de.eldoria.updatebutler.config.Configuration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Deletes release files which are no longer used by any release.
+ */
+@Slf4j
+public class ArtifactCollector implements Runnable {
+    private final Configuration configuration;
+    private final ArtifactStore store;
+
+    public ArtifactCollector(Configuration configuration, ArtifactStore store) {
+        this.configuration = configuration;
+        this.store = store;
+    }
+
+    @Override
+    public void run() {
+        // files created after the references were counted are protected by the grace period
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(configuration.getArtifacts().getCollectGraceMinutes()));
+        try {
+            Map<String, Integer> references = configuration.countArtifactReferences();
+            int deleted = store.collect(references.keySet(), cutoff);
+            log.info("Collected {} unused release files. {} release files are in use.", deleted, references.size());
+        } catch (IOException | RuntimeException e) {
+            // an exception would cancel the scheduled task
+            log.error("Could not collect unused release files", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package de.eldoria.updatebutler.scheduler;
+
+import de.eldoria.updatebutler.config.Configuration;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists the download counts of all releases in the background.
+ */
+@Slf4j
+public class DownloadCounterFlush implements Runnable {
+    private final Configuration configuration;
+
+    public DownloadCounterFlush(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    @Override
+    public void run() {
+        log.trace("Flushing download counters.");
+        try {
+            configuration.saveDownloadCounters();
+        } catch (RuntimeException e) {
+            // an exception would cancel the scheduled task
+            log.error("Could not flush download counters", e);
+        }
+    }
+}
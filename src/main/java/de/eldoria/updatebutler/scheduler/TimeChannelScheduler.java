@@ -2,6 +2,9 @@ package de.eldoria.updatebutler.scheduler;
 
 import de.eldoria.updatebutler.config.Configuration;
 import de.eldoria.updatebutler.config.GuildSettings;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.GuildChannel;
 import net.dv8tion.jda.api.sharding.ShardManager;
@@ -9,13 +12,16 @@ import net.dv8tion.jda.api.sharding.ShardManager;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Map;
 
 @Slf4j
 public class TimeChannelScheduler implements Runnable {
     private final ShardManager manager;
     private final Configuration configuration;
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
+    private final Histogram duration = Metrics.registry().histogram("updatebutler_time_channel_refresh_duration_seconds",
+            "Time spent refreshing all time channels.");
+    private final Counter renamed = Metrics.registry().counter("updatebutler_time_channel_renames_total",
+            "Submitted time channel renames.");
 
     public TimeChannelScheduler(ShardManager manager, Configuration configuration) {
         this.manager = manager;
@@ -25,14 +31,18 @@ public class TimeChannelScheduler implements Runnable {
     @Override
     public void run() {
         log.debug("Refreshing time channel.");
-        for (Map.Entry<String, GuildSettings> entry : configuration.getGuildSettings().entrySet()) {
-            long timeChannel = entry.getValue().getTimeChannel();
+        long start = System.nanoTime();
+        for (String guildId : configuration.getTimeChannelGuilds()) {
+            GuildSettings settings = configuration.getGuildSettings(guildId);
+            long timeChannel = settings.getTimeChannel();
             if (timeChannel == 0) continue;
             GuildChannel channel = manager.getGuildChannelById(timeChannel);
             if (channel == null) continue;
-            String s = "Developer Time: " + formatter.format(LocalDateTime.now().atZone(ZoneId.of(entry.getValue().getTimeZone())));
-            log.debug("Refreshing time channel for guild {}. Setting to {}", entry.getKey(), s);
+            String s = "Developer Time: " + formatter.format(LocalDateTime.now().atZone(ZoneId.of(settings.getTimeZone())));
+            log.debug("Refreshing time channel for guild {}. Setting to {}", guildId, s);
             channel.getManager().setName(s).submit();
+            renamed.inc();
         }
+        duration.recordSince(start);
     }
 }
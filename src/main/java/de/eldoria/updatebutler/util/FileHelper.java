@@ -1,48 +1,75 @@
 package de.eldoria.updatebutler.util;
 
-import com.google.api.client.util.IOUtils;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 @Slf4j
 public final class FileHelper {
-    private static final Pattern FILE_NAME = Pattern.compile("/?(.+?)\\.([a-z]+?)$");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 60000;
 
     private FileHelper() {
     }
 
     /**
-     * Get every file from a url.
+     * Download a file and compute its sha256 hash in a single pass.
+     * <p>
+     * The file is created and synced to disk. It is deleted if the download fails.
      *
-     * @param url url for download
+     * @param url     url for download
+     * @param file    file to create
+     * @param maxSize maximum size of the file in bytes
      *
-     * @return file object or null if the url could not be found.
+     * @return sha256 hash of the file as hex string
+     *
+     * @throws IOException when the file could not be downloaded or is larger than the maximum size
      */
-    public static Optional<File> getFileFromURL(String url) {
-        try {
-            InputStream inputStream = new URL(url).openStream();
+    public static String download(String url, Path file, long maxSize) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        long length = connection.getContentLengthLong();
+        if (length > maxSize) {
+            throw new IOException("File of " + url + " has " + length + " bytes. Maximum is " + maxSize + " bytes.");
+        }
 
-            Matcher matcher = FILE_NAME.matcher(url);
-            if (!matcher.find()) {
-                return Optional.empty();
+        boolean complete = false;
+        try (InputStream in = connection.getInputStream();
+             FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            Hasher hasher = Hashing.sha256().newHasher();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long size = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                if (size > maxSize) {
+                    throw new IOException("File of " + url + " exceeds the maximum of " + maxSize + " bytes.");
+                }
+                hasher.putBytes(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+            }
+            out.force(true);
+            complete = true;
+            return hasher.hash().toString();
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(file);
             }
-
-            File tempFile = File.createTempFile(matcher.group(1), "." + matcher.group(2));
-            FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
-            IOUtils.copy(inputStream, fileOutputStream);
-            tempFile.deleteOnExit();
-            return Optional.of(tempFile);
-        } catch (IOException e) {
-            log.error("failed to fetch url {}", url, e);
         }
-        return Optional.empty();
     }
 }
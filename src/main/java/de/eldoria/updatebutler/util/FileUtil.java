@@ -2,13 +2,22 @@ package de.eldoria.updatebutler.util;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 @Slf4j
 public class FileUtil {
@@ -37,7 +46,58 @@ public class FileUtil {
         return Paths.get(home(), destination).toFile();
     }
 
+    /**
+     * Write a file atomically.
+     * <p>
+     * The content is written to a temporary file next to the target, synced to disk and moved over the target. Readers
+     * and crashes will either see the old or the new file, but never a partially written one.
+     *
+     * @param target file to write
+     * @param action action which writes the content
+     *
+     * @throws IOException when the file could not be written
+     */
+    public static void writeAtomically(Path target, WriterAction action) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                action.write(writer);
+                writer.flush();
+                out.getFD().sync();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        syncDirectory(directory);
+    }
+
+    /**
+     * Sync a directory to persist renames and deletions of its files. Not supported on every platform.
+     *
+     * @param directory directory to sync
+     */
+    public static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.trace("Could not sync directory {}", directory, e);
+        }
+    }
+
     public static String home() {
         return new File(".").getAbsoluteFile().getParentFile().toString();
     }
+
+    @FunctionalInterface
+    public interface WriterAction {
+        void write(Writer writer) throws IOException;
+    }
 }
@@ -0,0 +1,30 @@
+package de.eldoria.updatebutler.webhook;
+
+import lombok.Data;
+
+/**
+ * A release of a github webhook which is waiting to be built.
+ */
+@Data
+public class WebhookJob {
+    /**
+     * Id of the github delivery. Redeliveries of a webhook have the same id.
+     */
+    private final String deliveryId;
+    private final int applicationId;
+    private final String version;
+    private final String name;
+    private final String description;
+    private final String assetUrl;
+    private final boolean prerelease;
+    private int attempts;
+
+    /**
+     * Get the key of the job. There is only one job per key.
+     *
+     * @return key of application and version
+     */
+    public String key() {
+        return applicationId + ":" + version;
+    }
+}
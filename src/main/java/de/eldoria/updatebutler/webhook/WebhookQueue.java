@@ -0,0 +1,326 @@
+package de.eldoria.updatebutler.webhook;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import de.eldoria.updatebutler.config.Application;
+import de.eldoria.updatebutler.config.Configuration;
+import de.eldoria.updatebutler.config.Release;
+import de.eldoria.updatebutler.config.ReleaseBuilder;
+import de.eldoria.updatebutler.config.WebhookSettings;
+import de.eldoria.updatebutler.metrics.Counter;
+import de.eldoria.updatebutler.metrics.Histogram;
+import de.eldoria.updatebutler.metrics.Metrics;
+import de.eldoria.updatebutler.metrics.MetricsRegistry;
+import de.eldoria.updatebutler.util.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue of github webhooks which builds the releases in the background.
+ * <p>
+ * Every pending job is stored as a file and loaded again after a restart. Failed jobs are retried with an exponential
+ * backoff. Webhooks are deduplicated by their delivery id and by the application and version of the release.
+ */
+@Slf4j
+public class WebhookQueue {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * Amount of delivery ids which are remembered after their job was completed.
+     */
+    private static final int RECENT_DELIVERIES = 1024;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+    private final Configuration configuration;
+    private final WebhookSettings settings;
+    private final Path directory;
+    private final ScheduledExecutorService workers;
+    private final Map<String, WebhookJob> pending = new HashMap<>();
+    private final Map<String, Boolean> deliveries = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_DELIVERIES;
+        }
+    };
+    private final Counter accepted;
+    private final Counter duplicates;
+    private final Counter exists;
+    private final Counter rejected;
+    private final Counter succeeded;
+    private final Counter retried;
+    private final Counter failed;
+    private final Histogram duration;
+
+    /**
+     * Create a new webhook queue. Pending jobs are processed after {@link #start()} was called.
+     *
+     * @param configuration configuration which receives the releases
+     * @param directory     directory of the pending jobs
+     */
+    public WebhookQueue(Configuration configuration, Path directory) {
+        this.configuration = configuration;
+        this.settings = configuration.getWebhookQueue();
+        this.directory = directory;
+        AtomicInteger count = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(1, settings.getWorkers()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Webhook worker " + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.setRemoveOnCancelPolicy(true);
+        workers = executor;
+
+        MetricsRegistry metrics = Metrics.registry();
+        accepted = webhooks(metrics, "accepted");
+        duplicates = webhooks(metrics, "duplicate");
+        exists = webhooks(metrics, "exists");
+        rejected = webhooks(metrics, "rejected");
+        succeeded = jobs(metrics, "success");
+        retried = jobs(metrics, "retry");
+        failed = jobs(metrics, "failed");
+        duration = metrics.histogram("updatebutler_webhook_job_duration_seconds",
+                "Time spent building a release of a webhook.");
+        metrics.gauge("updatebutler_webhook_jobs_pending", "Webhook jobs waiting to be built.", this::size);
+    }
+
+    private static Counter webhooks(MetricsRegistry metrics, String result) {
+        return metrics.counter("updatebutler_webhook_submissions_total", "Submitted webhooks by result.",
+                "result", result);
+    }
+
+    private static Counter jobs(MetricsRegistry metrics, String result) {
+        return metrics.counter("updatebutler_webhook_attempts_total", "Attempts to build a webhook release by result.",
+                "result", result);
+    }
+
+    /**
+     * Load the pending jobs and start processing them.
+     *
+     * @throws IOException when the job directory could not be read
+     */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                WebhookJob job;
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    job = GSON.fromJson(reader, WebhookJob.class);
+                } catch (IOException | JsonParseException e) {
+                    log.warn("Could not read webhook job {}. Skipping.", file, e);
+                    continue;
+                }
+                synchronized (this) {
+                    pending.put(job.key(), job);
+                    deliveries.put(job.getDeliveryId(), Boolean.TRUE);
+                }
+                workers.execute(() -> process(job));
+            }
+        }
+        log.info("Loaded {} pending webhook jobs.", size());
+    }
+
+    /**
+     * Stop the workers and wait for running jobs. Pending jobs remain stored and are processed after the next start.
+     * <p>
+     * No release is added to the configuration after this method returned, unless a job did not finish in time.
+     */
+    public void stop() {
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Webhook workers did not stop within {} seconds.", STOP_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submit a job. The job is stored before this method returns.
+     *
+     * @param job job to submit
+     *
+     * @return result of the submission
+     */
+    public synchronized Submission submit(WebhookJob job) {
+        if (deliveries.containsKey(job.getDeliveryId()) || pending.containsKey(job.key())) {
+            log.debug("Skipping duplicated webhook {} of {}.", job.getDeliveryId(), job.key());
+            duplicates.inc();
+            return Submission.DUPLICATE;
+        }
+        if (isBuilt(job)) {
+            log.info("Release of webhook {} of {} exists already. Delete the release to publish it again.",
+                    job.getDeliveryId(), job.key());
+            exists.inc();
+            return Submission.RELEASE_EXISTS;
+        }
+        if (pending.size() >= settings.getQueue()) {
+            log.warn("Webhook queue is full. Rejecting webhook {} of {}.", job.getDeliveryId(), job.key());
+            rejected.inc();
+            return Submission.FULL;
+        }
+        try {
+            persist(job);
+        } catch (IOException e) {
+            log.error("Could not store webhook job {}.", job.key(), e);
+            return Submission.FAILED;
+        }
+        pending.put(job.key(), job);
+        deliveries.put(job.getDeliveryId(), Boolean.TRUE);
+        accepted.inc();
+        workers.execute(() -> process(job));
+        return Submission.ACCEPTED;
+    }
+
+    /**
+     * Get the amount of pending jobs.
+     *
+     * @return pending jobs
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    private void process(WebhookJob job) {
+        Optional<Application> application = configuration.getApplicationById(job.getApplicationId());
+        if (application.isEmpty()) {
+            log.warn("Application {} of webhook job was deleted. Dropping job.", job.getApplicationId());
+            complete(job, false);
+            return;
+        }
+        if (isBuilt(job)) {
+            createdMeanwhile(job);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Optional<Release> release;
+        boolean added = false;
+        try {
+            release = ReleaseBuilder.buildRelease(configuration, application.get(), job.getVersion(), job.getName(),
+                    job.getDescription(), job.getAssetUrl(), job.isPrerelease());
+            // existing releases are never replaced by webhooks. The unused file is deleted by the next collection.
+            added = release.isPresent() && configuration.addReleaseIfAbsent(application.get(), release.get());
+        } catch (RuntimeException e) {
+            log.error("Could not build release of webhook job {}.", job.key(), e);
+            release = Optional.empty();
+        }
+        duration.recordSince(start);
+
+        if (release.isPresent() && !added) {
+            createdMeanwhile(job);
+            return;
+        }
+        if (release.isPresent()) {
+            log.info("Built release {} of application {} from webhook.", job.getVersion(), job.getApplicationId());
+            succeeded.inc();
+            complete(job, true);
+            return;
+        }
+        retry(job);
+    }
+
+    private void createdMeanwhile(WebhookJob job) {
+        log.info("Release {} of application {} was created in the meantime. Dropping webhook job.",
+                job.getVersion(), job.getApplicationId());
+        complete(job, true);
+    }
+
+    private void retry(WebhookJob job) {
+        job.setAttempts(job.getAttempts() + 1);
+        if (job.getAttempts() >= settings.getMaxAttempts()) {
+            log.error("Could not build release of webhook job {} after {} attempts. Dropping job.",
+                    job.key(), job.getAttempts());
+            failed.inc();
+            complete(job, false);
+            return;
+        }
+        try {
+            persist(job);
+        } catch (IOException e) {
+            log.warn("Could not store attempts of webhook job {}.", job.key(), e);
+        }
+        if (workers.isShutdown()) {
+            // the job remains stored and is retried after the next start
+            return;
+        }
+        long delay = Math.min((long) settings.getRetryDelaySeconds() << Math.min(job.getAttempts() - 1, 20),
+                settings.getMaxRetryDelaySeconds());
+        log.warn("Could not build release of webhook job {}. Retrying in {} seconds.", job.key(), delay);
+        retried.inc();
+        workers.schedule(() -> process(job), delay, TimeUnit.SECONDS);
+    }
+
+    private boolean isBuilt(WebhookJob job) {
+        return configuration.getApplicationById(job.getApplicationId())
+                .map(application -> application.getReleaseByKey(job.getVersion()).isPresent())
+                .orElse(false);
+    }
+
+    /**
+     * Remove a finished job.
+     *
+     * @param job      finished job
+     * @param released true if the release exists. Otherwise the delivery is forgotten, so github may redeliver it.
+     */
+    private synchronized void complete(WebhookJob job, boolean released) {
+        pending.remove(job.key());
+        if (!released) {
+            deliveries.remove(job.getDeliveryId());
+        }
+        try {
+            Files.deleteIfExists(file(job));
+        } catch (IOException e) {
+            log.warn("Could not delete webhook job {}.", job.key(), e);
+        }
+    }
+
+    private void persist(WebhookJob job) throws IOException {
+        FileUtil.writeAtomically(file(job), writer -> GSON.toJson(job, writer));
+    }
+
+    private Path file(WebhookJob job) {
+        return directory.resolve(Hashing.sha256().hashString(job.key(), StandardCharsets.UTF_8) + ".json");
+    }
+
+    /**
+     * Result of a submitted webhook.
+     */
+    public enum Submission {
+        /**
+         * The job was stored and will be processed.
+         */
+        ACCEPTED,
+        /**
+         * The webhook was already received or a job of the same release is pending.
+         */
+        DUPLICATE,
+        /**
+         * The release exists already. Existing releases are not replaced by webhooks.
+         */
+        RELEASE_EXISTS,
+        /**
+         * The queue is full.
+         */
+        FULL,
+        /**
+         * The job could not be stored.
+         */
+        FAILED
+    }
+}
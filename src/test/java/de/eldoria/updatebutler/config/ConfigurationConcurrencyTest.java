@@ -0,0 +1,239 @@
+package de.eldoria.updatebutler.config;
+
+import de.eldoria.updatebutler.listener.ReleaseCreateListener;
+import de.eldoria.updatebutler.util.C;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs lookups, registry changes, release changes, download counting and snapshot writes of a configuration at once.
+ * <p>
+ * Every change is recorded by the test. Afterwards the configuration and a configuration loaded from its files have to
+ * contain every change, and the indexes have to agree with the applications.
+ */
+class ConfigurationConcurrencyTest {
+    private static final int GUILDS = 4;
+    private static final int APPS_PER_GUILD = 8;
+    private static final int APPLICATIONS = GUILDS * APPS_PER_GUILD;
+    private static final int RELEASES_PER_APP = 5;
+    private static final int RELEASE_WRITERS = 4;
+    private static final int RELEASES_PER_WRITER = 200;
+    private static final int DOWNLOADERS = 4;
+    private static final int DOWNLOADS_PER_THREAD = 20000;
+    private static final int CHURN_APPLICATIONS = 150;
+    private static final int READERS = 4;
+    private static final int FLUSHERS = 2;
+
+    @TempDir
+    Path directory;
+    private Configuration configuration;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new SyntheticConfiguration().guilds(GUILDS).appsPerGuild(APPS_PER_GUILD).releasesPerApp(RELEASES_PER_APP)
+                .phrases(0).write(directory);
+        configuration = Configuration.load(directory);
+        configuration.setReleaseListener(new ReleaseCreateListener(configuration, null, null));
+    }
+
+    @Test
+    void concurrentChangesAreNotLost() throws Exception {
+        Map<Integer, Set<String>> addedReleases = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> downloads = new ConcurrentHashMap<>();
+        Map<Integer, String> keptApplications = new ConcurrentHashMap<>();
+        Set<Integer> deletedApplications = ConcurrentHashMap.newKeySet();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        int threads = RELEASE_WRITERS + DOWNLOADERS + READERS + FLUSHERS + 1;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> observers = new ArrayList<>();
+
+        for (int writer = 0; writer < RELEASE_WRITERS; writer++) {
+            // every writer owns one application of each guild. The guilds are loaded by the first lookup.
+            int id = writer + 1;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < RELEASES_PER_WRITER; i++) {
+                    int applicationId = id + (i % GUILDS) * APPS_PER_GUILD;
+                    Application application = configuration.getApplicationById(applicationId).orElseThrow();
+                    String version = "2." + id + "." + i;
+                    configuration.addRelease(application, release(version, i));
+                    if (i % 3 == 0) {
+                        assertTrue(configuration.deleteRelease(application, version));
+                    } else {
+                        addedReleases.computeIfAbsent(applicationId, k -> ConcurrentHashMap.newKeySet()).add(version);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (int downloader = 0; downloader < DOWNLOADERS; downloader++) {
+            long seed = downloader;
+            writers.add(executor.submit(() -> {
+                start.await();
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < DOWNLOADS_PER_THREAD; i++) {
+                    int id = random.nextInt(APPLICATIONS) + 1;
+                    String version = SyntheticConfiguration.version(random.nextInt(RELEASES_PER_APP));
+                    Release release = configuration.getApplicationById(id).orElseThrow()
+                            .getReleaseByKey(version).orElseThrow();
+                    release.downloaded();
+                    downloads.computeIfAbsent(id + "/" + version, k -> new AtomicInteger()).incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        writers.add(executor.submit(() -> {
+            start.await();
+            String guildId = SyntheticConfiguration.guildId(GUILDS - 1);
+            GuildSettings settings = configuration.getGuildSettings(guildId);
+            for (int i = 0; i < CHURN_APPLICATIONS; i++) {
+                int id = configuration.getNextAppId();
+                Application application = new Application(id, "churn" + id, "Churn " + id, "Churned application",
+                        new String[] {"c" + id}, 1L, null);
+                settings.addApplication(Integer.toString(id), application);
+                configuration.applicationChanged(application);
+                if (i % 2 == 0) {
+                    settings.removeApplication(application.getIdentifier());
+                    configuration.applicationDeleted(application);
+                    deletedApplications.add(id);
+                } else {
+                    application.setIdentifier("renamed" + id);
+                    settings.reindexApplication(application);
+                    configuration.applicationChanged(application);
+                    keptApplications.put(id, application.getWebhook());
+                }
+            }
+            return null;
+        }));
+
+        for (int flusher = 0; flusher < FLUSHERS; flusher++) {
+            // download counters are flushed by the scheduler and by every snapshot request
+            observers.add(executor.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    configuration.saveDownloadCounters();
+                    configuration.save();
+                    Thread.sleep(1);
+                }
+                return null;
+            }));
+        }
+
+        for (int reader = 0; reader < READERS; reader++) {
+            long seed = 100 + reader;
+            observers.add(executor.submit(() -> {
+                start.await();
+                SplittableRandom random = new SplittableRandom(seed);
+                while (writing.get()) {
+                    int id = random.nextInt(APPLICATIONS) + 1;
+                    Optional<Application> application = configuration.getApplicationById(id);
+                    if (application.isEmpty()) {
+                        failures.add("Application " + id + " is missing");
+                        continue;
+                    }
+                    String guildId = SyntheticConfiguration.guildId((id - 1) / APPS_PER_GUILD);
+                    GuildSettings settings = configuration.getGuildSettings(guildId);
+                    if (application.get().getId() != id
+                            || settings.getApplication("app" + id).orElse(null) != application.get()
+                            || settings.getApplication("a" + id).orElse(null) != application.get()
+                            || configuration.getApplicationByWebhook(application.get().getWebhook())
+                                               .orElse(null) != application.get()) {
+                        failures.add("Indexes of application " + id + " are inconsistent");
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(2, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        for (Future<?> observer : observers) {
+            observer.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failures, first: " + failures.peek());
+
+        configuration.flush();
+        assertState(configuration, addedReleases, downloads, keptApplications, deletedApplications);
+        assertState(Configuration.load(directory), addedReleases, downloads, keptApplications, deletedApplications);
+    }
+
+    private static void assertState(Configuration configuration, Map<Integer, Set<String>> addedReleases,
+                                    Map<String, AtomicInteger> downloads, Map<Integer, String> keptApplications,
+                                    Set<Integer> deletedApplications) {
+        for (int id = 1; id <= APPLICATIONS; id++) {
+            Application application = configuration.getApplicationById(id).orElseThrow();
+            assertEquals(id, application.getId());
+            Set<String> expected = new HashSet<>(addedReleases.getOrDefault(id, Set.of()));
+            for (int release = 0; release < RELEASES_PER_APP; release++) {
+                expected.add(SyntheticConfiguration.version(release));
+            }
+            assertEquals(expected, application.getReleases().keySet(), "releases of application " + id);
+            for (String version : expected) {
+                assertTrue(application.getReleaseIndex().find(version).isPresent(), "indexed release " + version);
+            }
+            for (int release = 0; release < RELEASES_PER_APP; release++) {
+                String version = SyntheticConfiguration.version(release);
+                AtomicInteger count = downloads.get(id + "/" + version);
+                assertEquals(count == null ? 0 : count.get(), application.getReleaseByKey(version).orElseThrow()
+                        .getDownloads(), "downloads of " + id + "/" + version);
+            }
+        }
+
+        GuildSettings settings = configuration.getGuildSettings(SyntheticConfiguration.guildId(GUILDS - 1));
+        for (Map.Entry<Integer, String> kept : keptApplications.entrySet()) {
+            int id = kept.getKey();
+            Application application = configuration.getApplicationById(id).orElseThrow();
+            assertSame(application, settings.getApplication("renamed" + id).orElseThrow());
+            assertSame(application, settings.getApplication("c" + id).orElseThrow());
+            assertFalse(settings.getApplication("churn" + id).isPresent(), "old identifier of " + id);
+            assertSame(application, configuration.getApplicationByWebhook(kept.getValue()).orElseThrow());
+        }
+        for (int id : deletedApplications) {
+            assertFalse(configuration.getApplicationById(id).isPresent(), "deleted application " + id);
+            assertFalse(settings.getApplication(Integer.toString(id)).isPresent(), "name of deleted application " + id);
+        }
+    }
+
+    private static Release release(String version, int index) {
+        String published = C.DATE_FORMAT.format(LocalDateTime.of(2021, 1, 1, 0, 0).plusMinutes(index));
+        return new Release(version, "Release " + version, "Patchnotes", false, published, "missing.jar",
+                Integer.toHexString(version.hashCode()));
+    }
+}